@@ -0,0 +1,169 @@
+// Micro and search benchmarks for the engines, run against a fixed suite of positions
+// Usage: java Benchmark [filter] [seconds]
+// Runs every benchmark whose name contains the filter. Each one is warmed up and then timed for
+// the given number of seconds (default 2), and reports time per operation, nodes per second for
+// searches, and bytes allocated per operation by the benchmark thread
+
+import java.lang.management.ManagementFactory;
+
+public class Benchmark {
+
+    //Opening, midgame and endgame positions, given as the columns played from the empty board
+    private static final String[][] POSITIONS = {
+        {"opening", ""},
+        {"midgame", "542531601335"},
+        {"endgame", "35634535415112113463255631"}
+    };
+
+    private static final int ALPHABETA_DEPTH = 8;
+    private static final int MINIMAX_DEPTH = 5;
+
+    //One benchmark operation; returns the number of search nodes it visited, or 0
+    private interface Op {
+        long run();
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static String filter = "";
+    private static double seconds = 2;
+    //Keeps results alive so the JIT cannot drop the work that produced them
+    private static long sink;
+
+    public static void main(String[] args){
+        if (args.length > 0)
+            filter = args[0];
+        if (args.length > 1)
+            seconds = Double.parseDouble(args[1]);
+
+        System.out.printf("%-28s %-8s %14s %14s %12s%n", "benchmark", "position", "ns/op", "nodes/s", "B/op");
+        Evaluator evaluator = new Evaluator();
+        for(String[] p : POSITIONS){
+            String name = p[0];
+            Bitboard board = Bitboard.fromMoves(p[1]);
+            int player = board.getActivePlayer();
+
+            run("evaluate", name, () -> {
+                sink += evaluator.evaluate(board, player);
+                return 0;
+            });
+            run("evaluateFull", name, () -> {
+                sink += evaluator.evaluateFull(board, player);
+                return 0;
+            });
+            //Move generation and incremental hashing: play and take back every legal column
+            run("makeUnmakeAll", name, () -> {
+                long keys = 0;
+                for(int i=0; i<board.getWidth(); i++){
+                    if (board.canMakeMove(i)){
+                        board.makeMove(i);
+                        keys ^= board.getKey();
+                        board.unMakeMove();
+                    }
+                }
+                sink += keys;
+                return 0;
+            });
+            run("isGameOver", name, () -> {
+                sink += board.isGameOver() ? 1 : 0;
+                return 0;
+            });
+            run("canonicalKey", name, () -> {
+                sink += board.getCanonicalKey();
+                return 0;
+            });
+
+            for(alphabeta.RootDriver driver : alphabeta.RootDriver.values()){
+                alphabeta engine = new alphabeta();
+                engine.setHashSize(16);
+                engine.setOpeningBook(null);
+                engine.setRootDriver(driver);
+                //Every run starts with an empty table so runs do not feed each other
+                run("alphabeta." + driver + ".depth" + ALPHABETA_DEPTH, name, engine::clearTable, () -> {
+                    sink += engine.searchToDepth(board, ALPHABETA_DEPTH);
+                    return engine.getNodeCount();
+                });
+            }
+
+            //Same search with the table off the heap
+            alphabeta offHeap = new alphabeta();
+            offHeap.setTable(new OffHeapTranspositionTable(16));
+            offHeap.setOpeningBook(null);
+            run("alphabeta.PVS.offHeap.depth" + ALPHABETA_DEPTH, name, offHeap::clearTable, () -> {
+                sink += offHeap.searchToDepth(board, ALPHABETA_DEPTH);
+                return offHeap.getNodeCount();
+            });
+
+            minimax mm = new minimax();
+            run("minimax.depth" + MINIMAX_DEPTH, name, () -> {
+                sink += mm.searchToDepth(board, MINIMAX_DEPTH);
+                return mm.getNodeCount();
+            });
+
+            EndgameSolver solver = new EndgameSolver(16);
+            if (board.getWidth()*board.getHeight() - board.getCoins() <= 16){
+                run("endgameSolver", name, solver::clearTable, () -> {
+                    sink += solver.solve(board);
+                    return solver.getNodeCount();
+                });
+            }
+        }
+        if (sink == 42)
+            System.out.println();
+    }
+
+    private static void run(String benchmark, String position, Op op){
+        run(benchmark, position, null, op);
+    }
+
+    //reset, if given, runs untimed before every operation
+    private static void run(String benchmark, String position, Runnable reset, Op op){
+        if (!benchmark.contains(filter))
+            return;
+        long threadId = Thread.currentThread().getId();
+
+        //Warm up for a quarter of the measured time so the JIT has compiled the hot path
+        long warmupEnd = System.nanoTime() + (long) (seconds * 0.25e9);
+        while (System.nanoTime() < warmupEnd){
+            if (reset != null)
+                reset.run();
+            op.run();
+        }
+
+        long ops = 0;
+        long nodes = 0;
+        long elapsed = 0;
+        long allocated = THREADS.getThreadAllocatedBytes(threadId);
+        long end = System.nanoTime() + (long) (seconds * 1e9);
+        if (reset == null){
+            //Batch cheap operations so reading the clock does not dominate
+            long start = System.nanoTime();
+            long now;
+            do {
+                for(int i=0; i<64; i++){
+                    nodes += op.run();
+                }
+                ops += 64;
+                now = System.nanoTime();
+            } while (now < end);
+            elapsed = now - start;
+        }
+        else{
+            //Operations that need a reset are whole searches, long enough to time one by one
+            do {
+                reset.run();
+                long start = System.nanoTime();
+                nodes += op.run();
+                elapsed += System.nanoTime() - start;
+                ops++;
+            } while (System.nanoTime() < end);
+        }
+        allocated = THREADS.getThreadAllocatedBytes(threadId) - allocated;
+
+        double nsPerOp = (double) elapsed / ops;
+        String nodesPerSecond = nodes > 0 ? String.format("%.0f", nodes / (elapsed / 1e9)) : "-";
+        System.out.printf("%-28s %-8s %14.1f %14s %12.1f%n", benchmark, position, nsPerOp, nodesPerSecond,
+                (double) allocated / ops);
+    }
+}
@@ -0,0 +1,322 @@
+// Connect Four position stored as one 64-bit mask per player plus column heights
+// The search mutates a single instance in place with makeMove/unMakeMove instead of copying boards
+// Also keeps per-window coin counts up to date so the evaluation can be read without scanning the board
+
+import java.util.Random;
+
+public class Bitboard {
+
+    public static final int WIDTH = 7;
+    public static final int HEIGHT = 6;
+
+    //Each column takes HEIGHT+1 bits so shifts never carry a line from one column into the next
+    private static final int H1 = HEIGHT + 1;
+
+    //Returned by safeMoves when the side to move wins with its next coin; no real mask has every bit
+    public static final long WINNING_MOVE = -1L;
+
+    //Zobrist keys per player and bit index, fixed so hashes stay valid for the life of the program
+    public static final long ZOBRIST_SEED = 0x436F6E6E65637434L;
+    private static final long[][] ZOBRIST = new long[2][WIDTH*H1];
+    static {
+        Random rng = new Random(ZOBRIST_SEED);
+        for(int p=0; p<2; p++){
+            for(int i=0; i<WIDTH*H1; i++){
+                ZOBRIST[p][i] = rng.nextLong();
+            }
+        }
+    }
+
+    //The bottom cell of every column, and every cell of the board without the spare bit on top
+    private static final long BOTTOM_MASK;
+    private static final long BOARD_MASK;
+    static {
+        long bottom = 0;
+        for(int x=0; x<WIDTH; x++){
+            bottom |= 1L << (x*H1);
+        }
+        BOTTOM_MASK = bottom;
+        BOARD_MASK = bottom * ((1L << HEIGHT) - 1);
+    }
+
+    //Bit index of the same cell reflected left to right
+    private static final int[] MIRROR = new int[WIDTH*H1];
+    static {
+        for(int bit=0; bit<WIDTH*H1; bit++){
+            MIRROR[bit] = (WIDTH-1 - bit/H1)*H1 + bit%H1;
+        }
+    }
+
+    //Every group of four cells that can make a line, as a bitmask, and the windows through each cell
+    public static final int WINDOW_COUNT = 69;
+    static final long[] WINDOW_MASKS = new long[WINDOW_COUNT];
+    private static final int[][] CELL_WINDOWS = new int[WIDTH*H1][];
+    static {
+        int[][] dirs = {{1, 0}, {0, 1}, {1, 1}, {1, -1}};
+        int n = 0;
+        for(int[] d : dirs){
+            for(int x=0; x<WIDTH; x++){
+                for(int y=0; y<HEIGHT; y++){
+                    int endX = x + 3*d[0];
+                    int endY = y + 3*d[1];
+                    if(endX >= WIDTH || endY < 0 || endY >= HEIGHT)
+                        continue;
+                    for(int k=0; k<4; k++){
+                        WINDOW_MASKS[n] |= 1L << ((x + k*d[0])*H1 + y + k*d[1]);
+                    }
+                    n++;
+                }
+            }
+        }
+        for(int bit=0; bit<WIDTH*H1; bit++){
+            int count = 0;
+            for(long w : WINDOW_MASKS){
+                if((w & (1L << bit)) != 0)
+                    count++;
+            }
+            CELL_WINDOWS[bit] = new int[count];
+            count = 0;
+            for(int i=0; i<WINDOW_COUNT; i++){
+                if((WINDOW_MASKS[i] & (1L << bit)) != 0)
+                    CELL_WINDOWS[bit][count++] = i;
+            }
+        }
+    }
+
+    private final long[] stones = new long[2];
+    private final int[] heights = new int[WIDTH];
+    private final int[] moves = new int[WIDTH*HEIGHT];
+    private int coins;
+    private int movesMade;
+    private long key;
+    //Key of the left-right mirror image of the position
+    private long mirrorKey;
+    //Coins each player has in each window, and per player how many windows hold k of their coins
+    //and none of the opponent's
+    private final byte[][] windowCoins = new byte[2][WINDOW_COUNT];
+    private final int[][] openWindows = new int[2][5];
+
+    public Bitboard(){
+        openWindows[0][0] = WINDOW_COUNT;
+        openWindows[1][0] = WINDOW_COUNT;
+    }
+
+    //Copy the framework's board into bitboard form
+    public Bitboard(GameStateModule state){
+        this();
+        for(int x=0; x<WIDTH; x++){
+            for(int y=0; y<HEIGHT; y++){
+                int coin = state.getAt(x, y);
+                if(coin != 0){
+                    addCoin(coin-1, x*H1 + y);
+                    heights[x] = y+1;
+                }
+            }
+        }
+        coins = state.getCoins();
+    }
+
+    //Position reached by playing the given columns, one digit per move, from the empty board
+    public static Bitboard fromMoves(String moves){
+        Bitboard board = new Bitboard();
+        for(int i=0; i<moves.length(); i++){
+            board.makeMove(moves.charAt(i) - '0');
+        }
+        return board;
+    }
+
+    //Make this board a copy of another one; the copied position becomes the root that moves are
+    //made from, so its move history is not carried over
+    public void copyFrom(Bitboard other){
+        stones[0] = other.stones[0];
+        stones[1] = other.stones[1];
+        System.arraycopy(other.heights, 0, heights, 0, WIDTH);
+        coins = other.coins;
+        key = other.key;
+        mirrorKey = other.mirrorKey;
+        movesMade = 0;
+        for(int p=0; p<2; p++){
+            System.arraycopy(other.windowCoins[p], 0, windowCoins[p], 0, WINDOW_COUNT);
+            System.arraycopy(other.openWindows[p], 0, openWindows[p], 0, 5);
+        }
+    }
+
+    public int getWidth(){
+        return WIDTH;
+    }
+
+    public int getHeight(){
+        return HEIGHT;
+    }
+
+    public int getCoins(){
+        return coins;
+    }
+
+    //Player to move, 1 or 2
+    public int getActivePlayer(){
+        return (coins & 1) + 1;
+    }
+
+    //Zobrist hash of the current position
+    public long getKey(){
+        return key;
+    }
+
+    //The same key for a position and its mirror image: the smaller of the two keys
+    public long getCanonicalKey(){
+        return Math.min(key, mirrorKey);
+    }
+
+    //True when the canonical key is the mirror image's, so columns stored under it must be flipped
+    public boolean isCanonicalMirrored(){
+        return mirrorKey < key;
+    }
+
+    //Translates a column between this position's orientation and the canonical one; the mapping is
+    //its own inverse. Values that are not columns, such as a missing move, pass through unchanged
+    public int canonicalMove(int move){
+        if(move < 0 || move >= WIDTH || !isCanonicalMirrored())
+            return move;
+        return WIDTH-1 - move;
+    }
+
+    //Coins of the given player (1 or 2) as a bitmask, bit x*(HEIGHT+1) + y for cell (x, y)
+    public long getStones(int player){
+        return stones[player-1];
+    }
+
+    //Number of windows holding exactly k coins of the given player (1 or 2) and none of the opponent's
+    public int getOpenWindows(int player, int k){
+        return openWindows[player-1][k];
+    }
+
+    public int getHeightAt(int x){
+        return heights[x];
+    }
+
+    //Returns 1 or 2 for an occupied cell and 0 for an empty cell or a cell off the board
+    public int getAt(int x, int y){
+        if(x < 0 || x >= WIDTH || y < 0 || y >= HEIGHT)
+            return 0;
+        long cell = 1L << (x*H1 + y);
+        if((stones[0] & cell) != 0)
+            return 1;
+        if((stones[1] & cell) != 0)
+            return 2;
+        return 0;
+    }
+
+    public boolean canMakeMove(int x){
+        return heights[x] < HEIGHT;
+    }
+
+    public void makeMove(int x){
+        addCoin(coins & 1, x*H1 + heights[x]);
+        heights[x]++;
+        moves[movesMade++] = x;
+        coins++;
+    }
+
+    //Only moves made on this instance can be taken back
+    public void unMakeMove(){
+        int x = moves[--movesMade];
+        coins--;
+        heights[x]--;
+        removeCoin(coins & 1, x*H1 + heights[x]);
+    }
+
+    private void addCoin(int p, int bit){
+        stones[p] |= 1L << bit;
+        key ^= ZOBRIST[p][bit];
+        mirrorKey ^= ZOBRIST[p][MIRROR[bit]];
+        byte[] own = windowCoins[p];
+        byte[] opp = windowCoins[p^1];
+        for(int w : CELL_WINDOWS[bit]){
+            //The window moves up one count for us if it was still open for us,
+            //and stops being open for the opponent if it was empty of our coins
+            if(opp[w] == 0){
+                openWindows[p][own[w]]--;
+                openWindows[p][own[w]+1]++;
+            }
+            if(own[w] == 0)
+                openWindows[p^1][opp[w]]--;
+            own[w]++;
+        }
+    }
+
+    private void removeCoin(int p, int bit){
+        stones[p] &= ~(1L << bit);
+        key ^= ZOBRIST[p][bit];
+        mirrorKey ^= ZOBRIST[p][MIRROR[bit]];
+        byte[] own = windowCoins[p];
+        byte[] opp = windowCoins[p^1];
+        for(int w : CELL_WINDOWS[bit]){
+            own[w]--;
+            if(opp[w] == 0){
+                openWindows[p][own[w]+1]--;
+                openWindows[p][own[w]]++;
+            }
+            if(own[w] == 0)
+                openWindows[p^1][opp[w]]++;
+        }
+    }
+
+    //The cell of column x, as a mask to test the cells from playableCells and winningCells against
+    public static long columnMask(int x){
+        return ((1L << HEIGHT) - 1) << (x*H1);
+    }
+
+    //The cell a coin dropped in each column that is not full would land in
+    public long playableCells(){
+        return ((stones[0] | stones[1]) + BOTTOM_MASK) & BOARD_MASK;
+    }
+
+    //Empty cells, playable now or not, where a coin of the given player (1 or 2) would complete four
+    public long winningCells(int player){
+        long own = stones[player-1];
+        //Vertical: three coins straight below
+        long cells = (own << 1) & (own << 2) & (own << 3);
+        //Horizontal and both diagonals: the cell can be at either end of the four or in the middle
+        for(int shift = H1-1; shift <= H1+1; shift++){
+            long pair = (own << shift) & (own << 2*shift);
+            cells |= pair & (own << 3*shift);
+            cells |= pair & (own >>> shift);
+            pair = (own >>> shift) & (own >>> 2*shift);
+            cells |= pair & (own << shift);
+            cells |= pair & (own >>> 3*shift);
+        }
+        return cells & BOARD_MASK & ~(stones[0] | stones[1]);
+    }
+
+    //Playable cells worth trying for the side to move, read off the immediate threats: a single
+    //threat of the opponent must be blocked, and otherwise no coin goes right under a cell the
+    //opponent wins on. Returns WINNING_MOVE if the side to move can win at once, and 0 if it loses
+    //to the opponent's next coin: two threats, or every move right under one. The game must not be over
+    public long safeMoves(){
+        int toMove = getActivePlayer();
+        long playable = playableCells();
+        if ((winningCells(toMove) & playable) != 0)
+            return WINNING_MOVE;
+        long threats = winningCells(3 - toMove);
+        long forced = threats & playable;
+        if (forced != 0)
+            return Long.bitCount(forced) > 1 ? 0 : forced;
+        return playable & ~(threats >>> 1);
+    }
+
+    public boolean isGameOver(){
+        return getWinner() != 0 || coins == WIDTH*HEIGHT;
+    }
+
+    //Returns the player with four in a row, or 0 if nobody has one. A four is a window holding four
+    //coins of one player, and makeMove already keeps count of those while updating the windows
+    //through the cell it fills, so this never looks at the board
+    public int getWinner(){
+        if(openWindows[0][4] != 0)
+            return 1;
+        if(openWindows[1][4] != 0)
+            return 2;
+        return 0;
+    }
+}
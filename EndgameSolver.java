@@ -0,0 +1,160 @@
+// Exact solver for positions with few empty cells left
+// Negamax alpha-beta over the whole remaining tree with integer scores from the side to move's
+// point of view: 0 for a draw, and for a win 43 minus the number of coins on the board once the
+// winning coin is played, so faster wins score higher (and faster losses lower)
+
+import java.util.function.BooleanSupplier;
+
+public class EndgameSolver {
+
+    private static final int CELLS = Bitboard.WIDTH*Bitboard.HEIGHT;
+    public static final int MAX_SCORE = CELLS + 1;
+
+    //Scores stay exact for a position no matter how it was reached, so entries are kept between solves
+    private final TranspositionTable table;
+    private final MoveOrdering ordering = new MoveOrdering();
+    private BooleanSupplier stopped = () -> false;
+    private boolean aborted;
+    private int bestMove;
+    private int bestScore;
+    private long nodes;
+
+    public EndgameSolver(int megabytes){
+        table = new HeapTranspositionTable(megabytes);
+    }
+
+    public void clearTable(){
+        table.clear();
+    }
+
+    //Checked at every node; once it returns true the solve gives up
+    public void setStopCondition(BooleanSupplier stopped){
+        this.stopped = stopped;
+    }
+
+    //Solves the position and returns the best column, or -1 if stopped before any column was solved.
+    //A column chosen after a stop is the best among the columns solved so far
+    public int solve(Bitboard board){
+        aborted = false;
+        nodes = 0;
+        table.newSearch();
+        ordering.newSearch();
+        bestMove = -1;
+        bestScore = -MAX_SCORE;
+        int alpha = -MAX_SCORE;
+        int beta = MAX_SCORE;
+        long entry = table.probe(board.getCanonicalKey());
+        int hashMove = entry != 0 ? board.canonicalMove(TranspositionTable.move(entry)) : TranspositionTable.NO_MOVE;
+
+        int count = ordering.orderMoves(board, 0, hashMove);
+        int[] moves = ordering.getMoves(0);
+        for(int m=0; m<count; m++){
+            int i = moves[m];
+            int score;
+            board.makeMove(i);
+            if (board.getWinner() != 0)
+                score = MAX_SCORE - board.getCoins();
+            else
+                score = -negamax(board, -beta, -alpha, 1);
+            board.unMakeMove();
+            if (aborted)
+                break;
+            if (score > bestScore){
+                bestScore = score;
+                bestMove = i;
+                alpha = Math.max(alpha, score);
+            }
+        }
+        return bestMove;
+    }
+
+    //Score of the last solve's best column; only meaningful if the solve was not stopped
+    public int getScore(){
+        return bestScore;
+    }
+
+    public boolean wasStopped(){
+        return aborted;
+    }
+
+    public long getNodeCount(){
+        return nodes;
+    }
+
+    private int negamax(Bitboard board, int alpha, int beta, int ply){
+        nodes++;
+        if (stopped.getAsBoolean()){
+            aborted = true;
+            return 0;
+        }
+        int coins = board.getCoins();
+        if (coins == CELLS)
+            return 0;
+
+        //Win right away if possible, and lose when no move survives the opponent's next coin
+        long allowed = board.safeMoves();
+        if (allowed == Bitboard.WINNING_MOVE)
+            return MAX_SCORE - (coins+1);
+        if (allowed == 0)
+            return -(MAX_SCORE - (coins+2));
+
+        //Otherwise the earliest possible win is with our next coin after this one, and if the board
+        //fills up before that the best left is a draw
+        int max = coins+3 <= CELLS ? MAX_SCORE - (coins+3) : 0;
+        if (beta > max){
+            beta = max;
+            if (alpha >= beta)
+                return beta;
+        }
+
+        int alphaOrig = alpha;
+        //Mirror images share an entry, with the column stored in the canonical orientation
+        long key = board.getCanonicalKey();
+        long entry = table.probe(key);
+        int hashMove = TranspositionTable.NO_MOVE;
+        if (entry != 0){
+            hashMove = board.canonicalMove(TranspositionTable.move(entry));
+            int score = TranspositionTable.score(entry);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT)
+                return score;
+            if (bound == TranspositionTable.LOWER && score >= beta)
+                return score;
+            if (bound == TranspositionTable.UPPER && score <= alpha)
+                return score;
+        }
+
+        int best = -MAX_SCORE;
+        int bestCol = TranspositionTable.NO_MOVE;
+        int count = ordering.orderMoves(board, ply, hashMove, allowed);
+        int[] moves = ordering.getMoves(ply);
+        for(int m=0; m<count; m++){
+            int i = moves[m];
+            board.makeMove(i);
+            int score = -negamax(board, -beta, -alpha, ply+1);
+            board.unMakeMove();
+            if (aborted)
+                return 0;
+            if (score > best){
+                best = score;
+                bestCol = i;
+            }
+            if (score > alpha)
+                alpha = score;
+            if (alpha >= beta){
+                ordering.recordCutoff(board, ply, i, CELLS - coins);
+                break;
+            }
+        }
+
+        int bound;
+        if (best <= alphaOrig)
+            bound = TranspositionTable.UPPER;
+        else if (best >= beta)
+            bound = TranspositionTable.LOWER;
+        else
+            bound = TranspositionTable.EXACT;
+        table.store(key, CELLS - coins, bound, best, board.canonicalMove(bestCol));
+        return best;
+    }
+}
@@ -0,0 +1,77 @@
+// Heuristic evaluation shared by the alphabeta and minimax engines
+// Every one of the 69 four-cell windows that only one player has coins in is worth a weight that
+// depends on how many coins are in it, positive for our windows and negative for the opponent's
+
+public class Evaluator {
+
+    //Scores of decided games lie outside anything evaluate() returns. A win scores WIN minus the
+    //plies it takes to reach, a loss the negative of that, and a draw 0
+    public static final int WIN = 1_000_000;
+    //Any score at least this far from 0 is a win or a loss
+    public static final int WIN_THRESHOLD = WIN - MoveOrdering.MAX_PLY;
+    //Beyond every score, for the bounds of a full search window
+    public static final int INFINITY = WIN + 1;
+
+    //Weight of an open window by the number of coins in it (index 0 is unused)
+    private final int[] windowWeights;
+    private final int centerBonus;
+    private final int sideBonus;
+    //Score of one window indexed by ourCoins*5 + theirCoins, so evaluate() never branches per window
+    private final int[] windowScore = new int[25];
+
+    private static final long CENTER_BOTTOM = 1L << (3*(Bitboard.HEIGHT+1));
+    private static final long LEFT_BOTTOM = 1L << (2*(Bitboard.HEIGHT+1));
+    private static final long RIGHT_BOTTOM = 1L << (4*(Bitboard.HEIGHT+1));
+
+    //Two coins are worth 1, three are worth 10, and holding the bottom center cell is worth 1000
+    //(500 for either cell beside it)
+    public Evaluator(){
+        this(new int[] {0, 0, 1, 10}, 1000, 500);
+    }
+
+    public Evaluator(int[] windowWeights, int centerBonus, int sideBonus){
+        this.windowWeights = windowWeights.clone();
+        this.centerBonus = centerBonus;
+        this.sideBonus = sideBonus;
+        for(int own=0; own<=4; own++){
+            for(int opp=0; opp<=4; opp++){
+                int score = 0;
+                if(opp == 0 && own > 0 && own < 4)
+                    score += windowWeights[own];
+                if(own == 0 && opp > 0 && opp < 4)
+                    score -= windowWeights[opp];
+                windowScore[own*5 + opp] = score;
+            }
+        }
+    }
+
+    //Score of a position that is not over, from the given player's (1 or 2) point of view.
+    //Reads the open window counts the board keeps up to date, so it costs the same at any depth
+    public int evaluate(Bitboard board, int player){
+        int opponent = 3 - player;
+        int score = 0;
+        for(int k=1; k<4; k++){
+            score += windowWeights[k] * (board.getOpenWindows(player, k) - board.getOpenWindows(opponent, k));
+        }
+        return score + startBonus(board.getStones(player));
+    }
+
+    //Same score computed from scratch by counting the coins in every window with popcounts
+    public int evaluateFull(Bitboard board, int player){
+        long own = board.getStones(player);
+        long opp = board.getStones(3 - player);
+        int score = 0;
+        for(long w : Bitboard.WINDOW_MASKS){
+            score += windowScore[Long.bitCount(own & w)*5 + Long.bitCount(opp & w)];
+        }
+        return score + startBonus(own);
+    }
+
+    private int startBonus(long own){
+        if((own & CENTER_BOTTOM) != 0)
+            return centerBonus;
+        if((own & (LEFT_BOTTOM | RIGHT_BOTTOM)) != 0)
+            return sideBonus;
+        return 0;
+    }
+}
@@ -0,0 +1,129 @@
+// Transposition table on the Java heap, backed by two parallel long arrays
+// Each bucket has a depth-preferred slot followed by an always-replace slot
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+public class HeapTranspositionTable implements TranspositionTable {
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private int generation;
+
+    //Uses the largest power-of-two number of entries that fits in the given number of megabytes
+    public HeapTranspositionTable(int megabytes){
+        long entries = Long.highestOneBit(Math.max(2, ((long) megabytes << 20) / 16));
+        entries = Math.min(entries, 1L << 30);
+        keys = new long[(int) entries];
+        data = new long[(int) entries];
+        bucketMask = (int) (entries/2 - 1);
+    }
+
+    private HeapTranspositionTable(long[] keys, long[] data, int generation){
+        this.keys = keys;
+        this.data = data;
+        this.generation = generation;
+        bucketMask = keys.length/2 - 1;
+    }
+
+    //Table from a snapshot's entries: all key words, then all data words
+    static HeapTranspositionTable read(FileChannel in, long entries, int generation) throws IOException {
+        if (entries < 2 || entries > (1L << 30) || Long.bitCount(entries) != 1)
+            throw new IOException("Snapshot has " + entries + " entries, not a heap table size");
+        long[] keys = new long[(int) entries];
+        long[] data = new long[(int) entries];
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        long position = TableSnapshot.HEADER_SIZE;
+        for(long[] words : new long[][] {keys, data}){
+            int i = 0;
+            while (i < words.length){
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), 8L*(words.length - i)));
+                TableSnapshot.readFully(in, buffer, position);
+                if (buffer.hasRemaining())
+                    throw new IOException("Snapshot is truncated");
+                position += buffer.limit();
+                buffer.flip();
+                LongBuffer longs = buffer.asLongBuffer();
+                int n = longs.remaining();
+                longs.get(words, i, n);
+                i += n;
+            }
+        }
+        return new HeapTranspositionTable(keys, data, generation);
+    }
+
+    @Override
+    public long size(){
+        return keys.length;
+    }
+
+    @Override
+    public void clear(){
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+        generation = 0;
+    }
+
+    @Override
+    public void newSearch(){
+        generation = (generation + 1) & 0xFF;
+    }
+
+    @Override
+    public int getGeneration(){
+        return generation;
+    }
+
+    @Override
+    public long probe(long key){
+        int i = ((int) key & bucketMask) << 1;
+        long d = data[i];
+        if(d != 0 && (keys[i] ^ d) == key)
+            return d;
+        d = data[i+1];
+        if(d != 0 && (keys[i+1] ^ d) == key)
+            return d;
+        return 0;
+    }
+
+    @Override
+    public void store(long key, int depth, int bound, int score, int move){
+        int i = ((int) key & bucketMask) << 1;
+        //Keep the deeper search from the current generation in the first slot and let everything else
+        //go to the second
+        long old = data[i];
+        if(old != 0 && (keys[i] ^ old) != key && TranspositionTable.generation(old) == generation
+                && depth < TranspositionTable.depth(old))
+            i++;
+        long d = TranspositionTable.pack(generation, depth, bound, score, move);
+        keys[i] = key ^ d;
+        data[i] = d;
+    }
+
+    @Override
+    public int getLayout(){
+        return TableSnapshot.HEAP_LAYOUT;
+    }
+
+    @Override
+    public void writeEntries(WritableByteChannel out) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        for(long[] words : new long[][] {keys, data}){
+            for(int i=0; i<words.length; ){
+                buffer.clear();
+                int n = Math.min(buffer.capacity()/8, words.length - i);
+                buffer.asLongBuffer().put(words, i, n);
+                buffer.limit(8*n);
+                TableSnapshot.writeFully(out, buffer);
+                i += n;
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+// Orders the columns searched at each node: the transposition table's best move first, then the
+// killer moves for that ply, then the rest by history score with center columns first on ties
+
+public class MoveOrdering {
+
+    public static final int MAX_PLY = Bitboard.WIDTH*Bitboard.HEIGHT + 1;
+
+    private static final int[] CENTER_ORDER = {3, 2, 4, 1, 5, 0, 6};
+    private static final int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+    private static final int KILLER_SCORE = Integer.MAX_VALUE - 2;
+
+    //Two killer moves per ply, -1 when unused
+    private final int[][] killers = new int[MAX_PLY][2];
+    //History scores per player and column
+    private final int[][] history = new int[2][Bitboard.WIDTH];
+    //Preallocated move and score lists per ply so ordering never allocates
+    private final int[][] moveLists = new int[MAX_PLY][Bitboard.WIDTH];
+    private final int[][] scoreLists = new int[MAX_PLY][Bitboard.WIDTH];
+
+    public MoveOrdering(){
+        clearKillers();
+    }
+
+    //Called before every search. Killers are tied to plies from the old root, so they are dropped,
+    //and history is halved so older results count for less
+    public void newSearch(){
+        clearKillers();
+        for(int[] h : history){
+            for(int i=0; i<h.length; i++){
+                h[i] >>= 1;
+            }
+        }
+    }
+
+    private void clearKillers(){
+        for(int[] k : killers){
+            k[0] = -1;
+            k[1] = -1;
+        }
+    }
+
+    //The list filled by the last orderMoves call for this ply
+    public int[] getMoves(int ply){
+        return moveLists[ply];
+    }
+
+    //Fills the move list for this ply with the legal columns in search order and returns how many there are
+    public int orderMoves(Bitboard board, int ply, int hashMove){
+        return orderMoves(board, ply, hashMove, -1L);
+    }
+
+    //Same, but only the columns whose playable cell is in the allowed mask
+    public int orderMoves(Bitboard board, int ply, int hashMove, long allowed){
+        int[] moves = moveLists[ply];
+        int[] scores = scoreLists[ply];
+        int[] h = history[board.getActivePlayer()-1];
+        int count = 0;
+
+        for(int c : CENTER_ORDER){
+            if(!board.canMakeMove(c) || (allowed & Bitboard.columnMask(c)) == 0)
+                continue;
+            int score;
+            if(c == hashMove)
+                score = HASH_MOVE_SCORE;
+            else if(c == killers[ply][0])
+                score = KILLER_SCORE;
+            else if(c == killers[ply][1])
+                score = KILLER_SCORE - 1;
+            else
+                score = h[c];
+
+            //Insertion sort by descending score; equal scores keep the center-out order
+            int j = count++;
+            while(j > 0 && scores[j-1] < score){
+                moves[j] = moves[j-1];
+                scores[j] = scores[j-1];
+                j--;
+            }
+            moves[j] = c;
+            scores[j] = score;
+        }
+        return count;
+    }
+
+    //Records a move that caused a cutoff so it is tried earlier at this ply and in similar positions
+    public void recordCutoff(Bitboard board, int ply, int move, int depth){
+        if(killers[ply][0] != move){
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] h = history[board.getActivePlayer()-1];
+        //A depth past the end of the game means nothing more, and would overflow the square
+        int d = Math.min(depth, MAX_PLY);
+        h[move] += d*d;
+        //Keep history scores well below the killer and hash move scores
+        if(h[move] > (1 << 24)){
+            for(int[] hist : history){
+                for(int i=0; i<hist.length; i++){
+                    hist[i] >>= 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+// Transposition table outside the Java heap, for tables of several gigabytes
+// Memory is direct ByteBuffers, or with a huge page directory given, a file mapped from it, so the
+// heap stays small and garbage collection never has to look at the table. Buckets are one 64 byte
+// cache line of four entries, so a probe touches a single line
+//
+// Direct buffers count against -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+// For huge pages pass a hugetlbfs mount such as /dev/hugepages with enough pages reserved.
+// Words are little endian whatever the platform, so saved snapshots can be mapped back as they are
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class OffHeapTranspositionTable implements TranspositionTable {
+
+    private static final int BUCKET_BYTES = 64;
+    private static final int SLOTS = BUCKET_BYTES / 16;
+    //No single buffer can pass 2GB, so the table is split into 1GB chunks
+    private static final int CHUNK_SHIFT = 30;
+    private static final int BUCKETS_PER_CHUNK_SHIFT = CHUNK_SHIFT - 6;
+    private static final long HUGE_PAGE = 2L << 20;
+    private static final byte[] ZEROS = new byte[1 << 16];
+
+    private final ByteBuffer[] chunks;
+    private final long buckets;
+    private int generation;
+
+    //A table of exactly this many megabytes, rounded down to whole buckets
+    public OffHeapTranspositionTable(long megabytes){
+        this(megabytes, null);
+    }
+
+    //Maps the table from a file in the given huge page directory; null for plain direct buffers
+    public OffHeapTranspositionTable(long megabytes, Path hugePageDir){
+        this(allocate(tableBytes(megabytes, hugePageDir), hugePageDir),
+                tableBytes(megabytes, hugePageDir) / BUCKET_BYTES, 0);
+    }
+
+    private OffHeapTranspositionTable(ByteBuffer[] chunks, long buckets, int generation){
+        this.chunks = chunks;
+        this.buckets = buckets;
+        this.generation = generation;
+    }
+
+    private static long tableBytes(long megabytes, Path hugePageDir){
+        long bytes = Math.max(BUCKET_BYTES, megabytes << 20);
+        if (hugePageDir != null)
+            bytes = Math.max(HUGE_PAGE, bytes / HUGE_PAGE * HUGE_PAGE);
+        return bytes;
+    }
+
+    private static ByteBuffer[] allocate(long bytes, Path hugePageDir){
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(bytes)];
+        try {
+            if (hugePageDir != null){
+                mapChunks(hugePageDir, bytes, chunks);
+                return chunks;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for(int i=0; i<chunks.length; i++){
+            int size = chunkSize(bytes, i);
+            //allocateDirect only promises 8 byte alignment, so start on a cache line
+            chunks[i] = ByteBuffer.allocateDirect(size + BUCKET_BYTES).alignedSlice(BUCKET_BYTES)
+                    .limit(size).slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return chunks;
+    }
+
+    private static int chunkCount(long bytes){
+        return (int) ((bytes + (1L << CHUNK_SHIFT) - 1) >>> CHUNK_SHIFT);
+    }
+
+    private static int chunkSize(long bytes, int chunk){
+        return (int) Math.min(1L << CHUNK_SHIFT, bytes - ((long) chunk << CHUNK_SHIFT));
+    }
+
+    //The mapping outlives the file, which is deleted as soon as it is mapped
+    private static void mapChunks(Path dir, long bytes, ByteBuffer[] chunks) throws IOException {
+        Path file = Files.createTempFile(dir, "connect4-tt", null);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            for(int i=0; i<chunks.length; i++){
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i << CHUNK_SHIFT, chunkSize(bytes, i))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    //Table mapped copy on write from a snapshot's entries, so the search never changes the file.
+    //The header is a whole number of cache lines, so buckets stay aligned
+    static OffHeapTranspositionTable map(FileChannel in, long entries, int generation) throws IOException {
+        long bytes = entries * 16;
+        if (entries <= 0 || bytes % BUCKET_BYTES != 0)
+            throw new IOException("Snapshot has " + entries + " entries, not whole buckets");
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(bytes)];
+        for(int i=0; i<chunks.length; i++){
+            chunks[i] = in.map(FileChannel.MapMode.PRIVATE, TableSnapshot.HEADER_SIZE + ((long) i << CHUNK_SHIFT),
+                    chunkSize(bytes, i)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new OffHeapTranspositionTable(chunks, bytes / BUCKET_BYTES, generation);
+    }
+
+    @Override
+    public long size(){
+        return buckets * SLOTS;
+    }
+
+    //Writes zeros over every page, so this also commits the memory up front
+    @Override
+    public void clear(){
+        for(ByteBuffer chunk : chunks){
+            for(int i=0; i<chunk.capacity(); i += ZEROS.length){
+                chunk.put(i, ZEROS, 0, Math.min(ZEROS.length, chunk.capacity() - i));
+            }
+        }
+        generation = 0;
+    }
+
+    @Override
+    public void newSearch(){
+        generation = (generation + 1) & 0xFF;
+    }
+
+    @Override
+    public int getGeneration(){
+        return generation;
+    }
+
+    //Buckets need not be a power of two, so the high half of the key is scaled to the bucket count
+    private long bucket(long key){
+        return ((key >>> 32) * buckets) >>> 32;
+    }
+
+    @Override
+    public long probe(long key){
+        long b = bucket(key);
+        ByteBuffer chunk = chunks[(int) (b >>> BUCKETS_PER_CHUNK_SHIFT)];
+        int base = (int) (b & ((1 << BUCKETS_PER_CHUNK_SHIFT) - 1)) * BUCKET_BYTES;
+        for(int s=0; s<SLOTS; s++){
+            int i = base + 16*s;
+            long d = chunk.getLong(i+8);
+            if(d != 0 && (chunk.getLong(i) ^ d) == key)
+                return d;
+        }
+        return 0;
+    }
+
+    //Overwrites the entry for the same key if there is one, otherwise an empty slot, otherwise the
+    //least valuable entry: any from an older search before one from this search, shallowest first
+    @Override
+    public void store(long key, int depth, int bound, int score, int move){
+        long b = bucket(key);
+        ByteBuffer chunk = chunks[(int) (b >>> BUCKETS_PER_CHUNK_SHIFT)];
+        int base = (int) (b & ((1 << BUCKETS_PER_CHUNK_SHIFT) - 1)) * BUCKET_BYTES;
+        int victim = base;
+        int victimWorth = Integer.MAX_VALUE;
+        for(int s=0; s<SLOTS; s++){
+            int i = base + 16*s;
+            long d = chunk.getLong(i+8);
+            if(d == 0 || (chunk.getLong(i) ^ d) == key){
+                victim = i;
+                break;
+            }
+            int worth = TranspositionTable.depth(d) + (TranspositionTable.generation(d) == generation ? 256 : 0);
+            if(worth < victimWorth){
+                victim = i;
+                victimWorth = worth;
+            }
+        }
+        long d = TranspositionTable.pack(generation, depth, bound, score, move);
+        chunk.putLong(victim, key ^ d);
+        chunk.putLong(victim+8, d);
+    }
+
+    @Override
+    public int getLayout(){
+        return TableSnapshot.OFF_HEAP_LAYOUT;
+    }
+
+    @Override
+    public void writeEntries(WritableByteChannel out) throws IOException {
+        for(ByteBuffer chunk : chunks){
+            TableSnapshot.writeFully(out, chunk.duplicate().clear());
+        }
+    }
+}
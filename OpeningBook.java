@@ -0,0 +1,150 @@
+// Opening book: the searched best move for every position up to a fixed number of coins
+// Positions and their mirror images share one entry under the canonical key. The file is sorted
+// by key and memory-mapped, so a lookup is a binary search straight over the mapped bytes
+//
+// Build a book with: java OpeningBook [file] [maxPly] [depth]
+
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class OpeningBook {
+
+    public static final String DEFAULT_FILE = "connect4.book";
+
+    //File layout: magic, version, Zobrist seed, max ply, entry count, then the sorted keys, then
+    //one column per key
+    private static final int MAGIC = 0x43344248;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    private final MappedByteBuffer buffer;
+    private final int maxPly;
+    private final int count;
+
+    private OpeningBook(MappedByteBuffer buffer){
+        this.buffer = buffer;
+        maxPly = buffer.getInt(16);
+        count = buffer.getInt(20);
+    }
+
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException(file + " is not an opening book");
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC)
+                throw new IOException(file + " is not an opening book");
+            if (buffer.getInt(4) != VERSION)
+                throw new IOException(file + " is a book from another version");
+            if (buffer.getLong(8) != Bitboard.ZOBRIST_SEED)
+                throw new IOException(file + " was built with different Zobrist keys");
+            if (channel.size() != HEADER_SIZE + 9L*buffer.getInt(20))
+                throw new IOException(file + " is truncated");
+            return new OpeningBook(buffer);
+        }
+    }
+
+    //Returns null when there is no usable book file. A book that cannot be read, is from another
+    //version or was built with other Zobrist keys is ignored, so a stale file never stops an engine
+    //from being created
+    public static OpeningBook openIfExists(String file){
+        Path path = Paths.get(file);
+        if (!Files.exists(path))
+            return null;
+        try {
+            return open(path);
+        } catch (IOException e) {
+            System.err.println("Playing without an opening book: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public int size(){
+        return count;
+    }
+
+    //Book column for this position, or -1 if the position is not in the book
+    public int lookup(Bitboard board){
+        if (board.getCoins() > maxPly)
+            return -1;
+        long key = board.getCanonicalKey();
+        int lo = 0;
+        int hi = count-1;
+        while (lo <= hi){
+            int mid = (lo + hi) >>> 1;
+            long k = buffer.getLong(HEADER_SIZE + 8*mid);
+            if (k < key)
+                lo = mid+1;
+            else if (k > key)
+                hi = mid-1;
+            else{
+                int move = buffer.get(HEADER_SIZE + 8*count + mid);
+                return board.canonicalMove(move);
+            }
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : DEFAULT_FILE);
+        int maxPly = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int depth = args.length > 2 ? Integer.parseInt(args[2]) : 12;
+
+        //One engine per side, so each engine's table only ever holds scores from one point of view
+        alphabeta[] engines = {new alphabeta(), new alphabeta()};
+        for(alphabeta engine : engines){
+            engine.setOpeningBook(null);
+        }
+        TreeMap<Long, Integer> entries = new TreeMap<>();
+        collect(new Bitboard(), maxPly, depth, engines, new HashSet<>(), entries);
+        write(file, maxPly, entries);
+        System.out.println("Wrote " + entries.size() + " positions to " + file);
+    }
+
+    //Searches every position reachable in at most maxPly moves that is not already in the book
+    private static void collect(Bitboard board, int maxPly, int depth, alphabeta[] engines,
+                                Set<Long> seen, TreeMap<Long, Integer> entries){
+        if (board.isGameOver() || !seen.add(board.getCanonicalKey()))
+            return;
+        int move = engines[board.getActivePlayer()-1].searchToDepth(board, depth);
+        entries.put(board.getCanonicalKey(), board.canonicalMove(move));
+        if (entries.size() % 1000 == 0)
+            System.out.println(entries.size() + " positions searched");
+        if (board.getCoins() == maxPly)
+            return;
+        for(int i=0; i<board.getWidth(); i++){
+            if (board.canMakeMove(i)){
+                board.makeMove(i);
+                collect(board, maxPly, depth, engines, seen, entries);
+                board.unMakeMove();
+            }
+        }
+    }
+
+    private static void write(Path file, int maxPly, TreeMap<Long, Integer> entries) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(Bitboard.ZOBRIST_SEED);
+            out.writeInt(maxPly);
+            out.writeInt(entries.size());
+            for(long key : entries.keySet()){
+                out.writeLong(key);
+            }
+            for(Map.Entry<Long, Integer> e : entries.entrySet()){
+                out.writeByte(e.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+// Measures alphabeta's split search at increasing thread counts
+// Usage: java ParallelSearchReport [maxThreads] [depth]
+// Speedup is the 1-thread time divided by the n-thread time, and search overhead is the extra
+// fraction of nodes the n-thread search visits compared to the 1-thread one
+
+public class ParallelSearchReport {
+
+    //Opening, midgame and endgame positions, given as the columns played from the empty board. Every
+    //one is still undecided at the default depth, so each search runs to full depth over millions of nodes
+    private static final String[] POSITIONS = {
+        "",
+        "3332",
+        "2442536601",
+        "542531601335",
+        "1442022226552664"
+    };
+
+    public static void main(String[] args){
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 18;
+
+        Bitboard[] boards = new Bitboard[POSITIONS.length];
+        for(int i=0; i<boards.length; i++){
+            boards[i] = replay(POSITIONS[i]);
+        }
+
+        //One untimed pass so the JIT has compiled the search, split tasks included, before the
+        //1-thread baseline is measured
+        searchAll(boards, maxThreads, depth);
+
+        double baseTime = 0;
+        long baseNodes = 0;
+        System.out.printf("%8s %10s %14s %8s %9s%n", "threads", "time(ms)", "nodes", "speedup", "overhead");
+        for(int threads=1; threads<=maxThreads; threads = threads < maxThreads ? Math.min(threads*2, maxThreads) : threads+1){
+            long[] result = searchAll(boards, threads, depth);
+            double time = result[0] / 1e6;
+            long nodes = result[1];
+            if (threads == 1){
+                baseTime = time;
+                baseNodes = nodes;
+            }
+            System.out.printf("%8d %10.1f %14d %8.2f %8.1f%%%n", threads, time, nodes,
+                    baseTime / time, 100.0 * (nodes - baseNodes) / baseNodes);
+        }
+    }
+
+    //A finished game would be searched in a handful of nodes and measure nothing
+    private static Bitboard replay(String moves){
+        Bitboard board = new Bitboard();
+        for(int i=0; i<moves.length(); i++){
+            if (board.isGameOver())
+                throw new IllegalArgumentException("Game is already over after " + moves.substring(0, i));
+            board.makeMove(moves.charAt(i) - '0');
+        }
+        if (board.isGameOver())
+            throw new IllegalArgumentException("Game is already over after " + moves);
+        return board;
+    }
+
+    //Searches every position and returns the nanoseconds taken and the nodes visited
+    private static long[] searchAll(Bitboard[] boards, int threads, int depth){
+        //A fresh engine per position so no thread count profits from an earlier search's table.
+        //They are all set up before the clock starts, so only the searches are timed
+        alphabeta[] engines = new alphabeta[boards.length];
+        for(int i=0; i<engines.length; i++){
+            engines[i] = new alphabeta();
+            engines[i].setHashSize(16);
+            engines[i].setSplitThreads(threads);
+        }
+        long nodes = 0;
+        long start = System.nanoTime();
+        for(int i=0; i<engines.length; i++){
+            engines[i].searchToDepth(boards[i], depth);
+            nodes += engines[i].getNodeCount();
+        }
+        long nanos = System.nanoTime() - start;
+        for(alphabeta engine : engines){
+            engine.setSplitThreads(1);
+        }
+        return new long[] {nanos, nodes};
+    }
+}
@@ -0,0 +1,76 @@
+// Flight recorder event committed by alphabeta after every completed iteration
+// Record with: java -XX:StartFlightRecording:filename=search.jfr ...
+// and read with: jfr print --events connect4.SearchIteration search.jfr
+// Loading an event class takes a good part of a second, so callers should not touch this class
+// until FlightRecorder.isInitialized() says a recording has been started
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name("connect4.SearchIteration")
+@Label("Search Iteration")
+@Category("Connect Four")
+@Description("One completed iteration of alphabeta's iterative deepening")
+public class SearchIterationEvent extends jdk.jfr.Event {
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Score")
+    int score;
+
+    @Label("Best Move")
+    int bestMove;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Iteration Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long nanos;
+
+    @Label("TT Probes")
+    long ttProbes;
+
+    @Label("TT Hits")
+    long ttHits;
+
+    @Label("TT Cutoffs")
+    long ttCutoffs;
+
+    @Label("Beta Cutoffs")
+    long cutoffs;
+
+    @Label("First Move Cutoffs")
+    long firstMoveCutoffs;
+
+    @Label("Effective Branching Factor")
+    double branchingFactor;
+
+    private static final EventType TYPE = EventType.getEventType(SearchIterationEvent.class);
+
+    //True while a recording has the event enabled, checked without creating an event
+    static boolean enabled(){
+        return TYPE.isEnabled();
+    }
+
+    static void commit(SearchStats stats){
+        SearchIterationEvent e = new SearchIterationEvent();
+        e.depth = stats.getDepth();
+        e.score = stats.getScore();
+        e.bestMove = stats.getBestMove();
+        e.nodes = stats.getNodes();
+        e.nanos = stats.getNanos();
+        e.ttProbes = stats.getTtProbes();
+        e.ttHits = stats.getTtHits();
+        e.ttCutoffs = stats.getTtCutoffs();
+        e.cutoffs = stats.getCutoffs();
+        e.firstMoveCutoffs = stats.getFirstMoveCutoffs();
+        e.branchingFactor = stats.getBranchingFactor();
+        e.commit();
+    }
+}
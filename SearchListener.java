@@ -0,0 +1,7 @@
+// Receives a report from alphabeta after every completed iteration of its iterative deepening
+// Called on the searching thread, so implementations should return quickly
+
+public interface SearchListener {
+
+    void iterationFinished(SearchStats stats);
+}
@@ -0,0 +1,145 @@
+// What one iteration of alphabeta's iterative deepening did, as handed to a SearchListener
+// Counts cover every thread working on the search. Helper threads fold their counts in at the end
+// of their own iterations, so with helpers running an iteration's counts can lag slightly
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class SearchStats {
+
+    private final int depth;
+    private final int score;
+    private final int bestMove;
+    private final long nanos;
+    private final long nodes;
+    private final long ttProbes;
+    private final long ttHits;
+    private final long ttCutoffs;
+    private final long cutoffs;
+    private final long firstMoveCutoffs;
+    private final double branchingFactor;
+
+    SearchStats(int depth, int score, int bestMove, long nanos, long[] counts, long lastNodes){
+        this.depth = depth;
+        this.score = score;
+        this.bestMove = bestMove;
+        this.nanos = nanos;
+        nodes = counts[NODES];
+        ttProbes = counts[TT_PROBES];
+        ttHits = counts[TT_HITS];
+        ttCutoffs = counts[TT_CUTOFFS];
+        cutoffs = counts[CUTOFFS];
+        firstMoveCutoffs = counts[FIRST_MOVE_CUTOFFS];
+        branchingFactor = lastNodes > 0 ? (double) nodes / lastNodes : 0;
+    }
+
+    public int getDepth(){
+        return depth;
+    }
+
+    public int getScore(){
+        return score;
+    }
+
+    public int getBestMove(){
+        return bestMove;
+    }
+
+    //Wall time of this iteration alone
+    public long getNanos(){
+        return nanos;
+    }
+
+    //Counts for this iteration alone, not the whole search
+    public long getNodes(){
+        return nodes;
+    }
+
+    public long getTtProbes(){
+        return ttProbes;
+    }
+
+    public long getTtHits(){
+        return ttHits;
+    }
+
+    //Probes whose stored bound answered the node without searching it
+    public long getTtCutoffs(){
+        return ttCutoffs;
+    }
+
+    public long getCutoffs(){
+        return cutoffs;
+    }
+
+    public long getFirstMoveCutoffs(){
+        return firstMoveCutoffs;
+    }
+
+    public double getTtHitRate(){
+        return ttProbes > 0 ? (double) ttHits / ttProbes : 0;
+    }
+
+    //Share of beta cutoffs caused by the first move searched, a measure of move ordering quality
+    public double getFirstMoveCutoffRate(){
+        return cutoffs > 0 ? (double) firstMoveCutoffs / cutoffs : 0;
+    }
+
+    //Nodes of this iteration divided by nodes of the one before, or 0 for the first iteration
+    public double getBranchingFactor(){
+        return branchingFactor;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("depth %d score %d move %d nodes %d time %.1fms tt hits %.1f%% tt cutoffs %d"
+                + " first move cutoffs %.1f%% ebf %.2f", depth, score, bestMove, nodes, nanos / 1e6,
+                100 * getTtHitRate(), ttCutoffs, 100 * getFirstMoveCutoffRate(), branchingFactor);
+    }
+
+    static final int NODES = 0;
+    static final int TT_PROBES = 1;
+    static final int TT_HITS = 2;
+    static final int TT_CUTOFFS = 3;
+    static final int CUTOFFS = 4;
+    static final int FIRST_MOVE_CUTOFFS = 5;
+    static final int COUNTERS = 6;
+
+    //Totals of a whole search. Each thread bumps its own plain long[COUNTERS] in the hot path and
+    //adds it in now and then; LongAdder stripes its cells so those adds never contend on a lock or
+    //a single cache line
+    static final class Totals {
+        private final LongAdder[] totals = new LongAdder[COUNTERS];
+
+        Totals(){
+            for(int i=0; i<COUNTERS; i++){
+                totals[i] = new LongAdder();
+            }
+        }
+
+        //Moves a thread's counts into the totals and zeroes them
+        void add(long[] counts){
+            for(int i=0; i<COUNTERS; i++){
+                if (counts[i] != 0){
+                    totals[i].add(counts[i]);
+                    counts[i] = 0;
+                }
+            }
+        }
+
+        long get(int counter){
+            return totals[counter].sum();
+        }
+
+        void sumInto(long[] out){
+            for(int i=0; i<COUNTERS; i++){
+                out[i] = totals[i].sum();
+            }
+        }
+
+        void reset(){
+            for(LongAdder a : totals){
+                a.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// Saves a transposition table to a file and loads it back, so a new process starts with a warm table
+// The file is a 64 byte header followed by the table's entries in its own layout, little endian.
+// Header: magic, version, Zobrist seed, layout, the player the scores are from, generation,
+// entry count and entry bytes. An off-heap table is mapped straight from the file, copy on write,
+// so loading costs nothing up front and the file is never changed by the search
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class TableSnapshot {
+
+    private static final int MAGIC = 0x43345454;
+    //Bumped whenever the data word layout or the meaning of scores changes
+    private static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    //Entry layouts, one per table implementation
+    static final int HEAP_LAYOUT = 1;
+    static final int OFF_HEAP_LAYOUT = 2;
+
+    private final TranspositionTable table;
+    private final int player;
+
+    private TableSnapshot(TranspositionTable table, int player){
+        this.table = table;
+        this.player = player;
+    }
+
+    public TranspositionTable getTable(){
+        return table;
+    }
+
+    //The player (1 or 2) whose point of view the stored scores are from, 0 if none
+    public int getPlayer(){
+        return player;
+    }
+
+    //Writes to a temporary file first and moves it into place, so a crash while saving never
+    //leaves a broken snapshot behind
+    public static void save(TranspositionTable table, int player, Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(MAGIC);
+                header.putInt(VERSION);
+                header.putLong(Bitboard.ZOBRIST_SEED);
+                header.putInt(table.getLayout());
+                header.putInt(player);
+                header.putInt(table.getGeneration());
+                header.putInt(0);
+                header.putLong(table.size());
+                header.putLong(table.size() * 16);
+                header.clear();
+                writeFully(out, header);
+                table.writeEntries(out);
+                out.force(false);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    //The file must be writable: Java only maps copy on write from a channel opened for writing,
+    //though nothing is ever written back
+    public static TableSnapshot load(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(in, header, 0);
+            if (header.hasRemaining() || header.getInt(0) != MAGIC)
+                throw new IOException(file + " is not a table snapshot");
+            if (header.getInt(4) != VERSION)
+                throw new IOException(file + " is a snapshot from another version");
+            if (header.getLong(8) != Bitboard.ZOBRIST_SEED)
+                throw new IOException(file + " was saved with different Zobrist keys");
+            int layout = header.getInt(16);
+            int player = header.getInt(20);
+            int generation = header.getInt(24);
+            long entries = header.getLong(32);
+            long bytes = header.getLong(40);
+            if (bytes != entries * 16 || in.size() != HEADER_SIZE + bytes)
+                throw new IOException(file + " is truncated");
+
+            TranspositionTable table;
+            if (layout == HEAP_LAYOUT)
+                table = HeapTranspositionTable.read(in, entries, generation);
+            else if (layout == OFF_HEAP_LAYOUT)
+                table = OffHeapTranspositionTable.map(in, entries, generation);
+            else
+                throw new IOException(file + " has an unknown table layout " + layout);
+            return new TableSnapshot(table, player);
+        }
+    }
+
+    static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()){
+            out.write(buffer);
+        }
+    }
+
+    //Reads from the given file position until the buffer is full or the file ends
+    static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()){
+            int n = in.read(buffer, position);
+            if (n < 0)
+                return;
+            position += n;
+        }
+    }
+}
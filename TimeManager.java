@@ -0,0 +1,102 @@
+// Decides how long alphabeta thinks about a move
+// The budget for a move is the fixed move time, or a share of the remaining game clock, whichever
+// is smaller. A new iteration is only started if its predicted cost, the last iteration's time
+// grown by the observed branching factor, still fits in the budget; a search that overruns anyway
+// is stopped at the budget
+
+public class TimeManager {
+
+    //Kept back from the game clock for the time it takes to hand the move over
+    private static final long CLOCK_MARGIN = 50_000_000L;
+    private static final int CELLS = Bitboard.WIDTH*Bitboard.HEIGHT;
+
+    private long moveTime = 0;
+    private long clock = -1;
+    private long increment = 0;
+
+    //Set on the thread getNextMove runs on, and read by a ponder search that gets promoted
+    private volatile long start;
+    private volatile long deadline = Long.MAX_VALUE;
+    private long lastNanos;
+    private long lastNodes;
+    private double lastBranching;
+    private double branching;
+
+    //Fixed time per move in milliseconds; 0 for no limit
+    public void setMoveTime(long millis){
+        moveTime = millis * 1_000_000L;
+    }
+
+    //Time left on our game clock and the increment per move in milliseconds, set before each move;
+    //a negative remaining time means no clock
+    public void setClock(long remainingMillis, long incrementMillis){
+        clock = remainingMillis < 0 ? -1 : remainingMillis * 1_000_000L;
+        increment = incrementMillis * 1_000_000L;
+    }
+
+    //Starts timing a move in a position with the given number of coins
+    public void startMove(int coins){
+        start = System.nanoTime();
+        long budget = moveTime > 0 ? moveTime : Long.MAX_VALUE;
+        if (clock >= 0){
+            //Spread the clock evenly over the moves we can still have to make
+            int movesLeft = Math.max(1, (CELLS - coins + 1) / 2);
+            long share = clock / movesLeft + increment;
+            budget = Math.min(budget, Math.max(0, Math.min(share, clock - CLOCK_MARGIN)));
+        }
+        deadline = budget == Long.MAX_VALUE ? Long.MAX_VALUE : start + budget;
+    }
+
+    //No time limit, for fixed-depth searches and pondering
+    public void startUnlimited(){
+        start = System.nanoTime();
+        deadline = Long.MAX_VALUE;
+    }
+
+    //Forgets the iterations of the last search. A ponder search that turns into the real one keeps
+    //its iterations, since it is the same search
+    public void newSearch(){
+        lastNanos = 0;
+        lastNodes = 0;
+        lastBranching = 0;
+        branching = 0;
+    }
+
+    public boolean isLimited(){
+        return deadline != Long.MAX_VALUE;
+    }
+
+    public long elapsedNanos(){
+        return System.nanoTime() - start;
+    }
+
+    //Records a completed iteration for predicting the next one
+    public void iterationFinished(long nanos, long nodes){
+        if (lastNodes > 0){
+            lastBranching = branching;
+            branching = (double) nodes / lastNodes;
+        }
+        lastNanos = nanos;
+        lastNodes = nodes;
+    }
+
+    //Predicted cost of the next iteration. Odd and even depths grow by different factors, so the
+    //larger of the last two is used
+    public long predictNextIteration(){
+        double factor = Math.max(1, Math.max(branching, lastBranching));
+        return (long) (lastNanos * factor);
+    }
+
+    //False when the next iteration is not expected to finish before the deadline, so starting it
+    //would only waste time
+    public boolean canStartIteration(){
+        if (!isLimited())
+            return true;
+        long now = System.nanoTime();
+        return now < deadline && now + predictNextIteration() <= deadline;
+    }
+
+    public boolean outOfTime(){
+        return isLimited() && System.nanoTime() >= deadline;
+    }
+}
@@ -0,0 +1,314 @@
+// Plays many games between two engines at once and reports the Elo difference
+// Usage: java Tournament engineA engineB [games=N] [movetime=ms] [threads=N] [openings=plies]
+//                        [seed=N] [sprt=elo0,elo1]
+// An engine is a class name, optionally followed by setters to call on every instance, for example
+// alphabeta:RootDriver=MTDF,Threads=2 calls setRootDriver(MTDF) and setThreads(2).
+// Every random opening is played twice with the colors swapped. With sprt set, the tournament
+// stops as soon as the sequential probability ratio test accepts either elo0 or elo1
+
+import java.lang.reflect.Method;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Tournament {
+
+    private final String[] engines;
+    private int games = 100;
+    private long moveTime = 100;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int openingPlies = 4;
+    private long seed = 1;
+    private boolean sprt = false;
+    private double elo0 = 0;
+    private double elo1 = 5;
+    //Error rates of the test, for accepting elo1 when elo0 is true and the other way around
+    private static final double SPRT_ALPHA = 0.05;
+    private static final double SPRT_BETA = 0.05;
+
+    //Results from engineA's point of view
+    private int wins;
+    private int losses;
+    private int draws;
+    private long moves;
+    private volatile boolean decided;
+    private long start;
+
+    //Engines are not thread safe, so every worker thread keeps its own pair and reuses it from game
+    //to game, like one player playing a series of games
+    private final ThreadLocal<AIModule[]> players = ThreadLocal.withInitial(this::createPlayers);
+
+    public Tournament(String engineA, String engineB){
+        engines = new String[] {engineA, engineB};
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2){
+            System.out.println("Usage: java Tournament engineA engineB [games=N] [movetime=ms] [threads=N]"
+                    + " [openings=plies] [seed=N] [sprt=elo0,elo1]");
+            return;
+        }
+        Tournament t = new Tournament(args[0], args[1]);
+        for(int i=2; i<args.length; i++){
+            String[] kv = args[i].split("=", 2);
+            if (kv.length != 2)
+                throw new IllegalArgumentException("Expected key=value: " + args[i]);
+            switch (kv[0]){
+                case "games": t.games = Integer.parseInt(kv[1]); break;
+                case "movetime": t.moveTime = Long.parseLong(kv[1]); break;
+                case "threads": t.threads = Integer.parseInt(kv[1]); break;
+                case "openings": t.openingPlies = Integer.parseInt(kv[1]); break;
+                case "seed": t.seed = Long.parseLong(kv[1]); break;
+                case "sprt":
+                    String[] bounds = kv[1].split(",");
+                    t.sprt = true;
+                    t.elo0 = Double.parseDouble(bounds[0]);
+                    t.elo1 = Double.parseDouble(bounds[1]);
+                    break;
+                default: throw new IllegalArgumentException("Unknown option " + kv[0]);
+            }
+        }
+        t.run();
+        //Engines may leave pool threads behind
+        System.exit(0);
+    }
+
+    public void run() throws InterruptedException {
+        System.out.println(engines[0] + " vs " + engines[1] + ": " + games + " games, " + moveTime
+                + "ms per move, " + threads + " threads, " + openingPlies + " random opening plies");
+        //Fails here rather than on every worker if an engine cannot be built
+        createPlayers();
+        start = System.nanoTime();
+        //Java 17 has no virtual threads; games spend their time searching, so one platform thread
+        //per core is all the concurrency that helps anyway
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicInteger next = new AtomicInteger();
+        for(int i=0; i<threads; i++){
+            pool.execute(() -> {
+                int pair;
+                while (!decided && (pair = next.getAndIncrement()) < (games+1)/2){
+                    String opening = randomOpening(pair);
+                    for(int side=0; side<2 && 2*pair+side < games; side++){
+                        int result = playGame(opening, side);
+                        record(result);
+                    }
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        report(true);
+    }
+
+    private AIModule[] createPlayers(){
+        return new AIModule[] {createEngine(engines[0]), createEngine(engines[1])};
+    }
+
+    //Class name with optional Name=value setters, see the usage at the top
+    static AIModule createEngine(String spec){
+        String[] parts = spec.split(":", 2);
+        try {
+            AIModule engine = (AIModule) Class.forName(parts[0]).getDeclaredConstructor().newInstance();
+            if (parts.length > 1){
+                for(String setting : parts[1].split(",")){
+                    String[] kv = setting.split("=", 2);
+                    set(engine, "set" + kv[0], kv[1]);
+                }
+            }
+            return engine;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create engine " + spec, e);
+        }
+    }
+
+    private static void set(Object engine, String setter, String value) throws ReflectiveOperationException {
+        for(Method m : engine.getClass().getMethods()){
+            if (!m.getName().equalsIgnoreCase(setter) || m.getParameterCount() != 1)
+                continue;
+            Class<?> type = m.getParameterTypes()[0];
+            Object arg;
+            if (type == int.class)
+                arg = Integer.parseInt(value);
+            else if (type == long.class)
+                arg = Long.parseLong(value);
+            else if (type == boolean.class)
+                arg = Boolean.parseBoolean(value);
+            else if (type == double.class)
+                arg = Double.parseDouble(value);
+            else if (type.isEnum())
+                arg = enumValue(type, value);
+            else
+                continue;
+            m.invoke(engine, arg);
+            return;
+        }
+        throw new IllegalArgumentException("No setter " + setter + " taking a number, boolean or enum on "
+                + engine.getClass().getName());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object enumValue(Class<?> type, String value){
+        return Enum.valueOf((Class<? extends Enum>) type, value);
+    }
+
+    //The same opening for both games of a pair, and for the same pair in every run with this seed
+    private String randomOpening(int pair){
+        Random rng = new Random(seed * 1_000_003L + pair);
+        Bitboard board = new Bitboard();
+        StringBuilder moves = new StringBuilder();
+        while (moves.length() < openingPlies){
+            int col = rng.nextInt(board.getWidth());
+            if (!board.canMakeMove(col))
+                continue;
+            board.makeMove(col);
+            //Openings that already decide the game are useless, so start over
+            if (board.isGameOver()){
+                board = new Bitboard();
+                moves.setLength(0);
+                continue;
+            }
+            moves.append(col);
+        }
+        return moves.toString();
+    }
+
+    //Plays one game with engineA moving first when side is 0. Returns 1 if engineA won, -1 if it
+    //lost and 0 for a draw. An engine that returns no legal move loses the game
+    private int playGame(String opening, int side){
+        AIModule[] ais = players.get();
+        GameStateModule game = new GameState_Opt7x6();
+        for(char c : opening.toCharArray()){
+            game.makeMove(c - '0');
+        }
+        //Index into ais of the engine playing player 1, who moves whenever the coin count is even
+        int firstEngine = side;
+        int result = 0;
+        int plies = 0;
+        while (!game.isGameOver()){
+            int engine = game.getCoins() % 2 == 0 ? firstEngine : 1 - firstEngine;
+            int move = nextMove(ais[engine], game);
+            if (move < 0 || move >= game.getWidth() || !game.canMakeMove(move)){
+                result = engine == 0 ? -1 : 1;
+                break;
+            }
+            game.makeMove(move);
+            plies++;
+        }
+        if (game.getWinner() != 0){
+            int winningEngine = game.getWinner() == 1 ? firstEngine : 1 - firstEngine;
+            result = winningEngine == 0 ? 1 : -1;
+        }
+        synchronized (this){
+            moves += plies;
+        }
+        return result;
+    }
+
+    //Runs the engine on its own thread and sets terminate once the move time is up, as the game
+    //framework does
+    private int nextMove(AIModule engine, GameStateModule game){
+        engine.terminate = false;
+        engine.chosenMove = -1;
+        GameStateModule copy = game.copy();
+        Thread t = new Thread(() -> engine.getNextMove(copy), "tournament-move");
+        t.setDaemon(true);
+        t.start();
+        try {
+            t.join(moveTime);
+            engine.terminate = true;
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return engine.chosenMove;
+    }
+
+    private synchronized void record(int result){
+        if (result > 0)
+            wins++;
+        else if (result < 0)
+            losses++;
+        else
+            draws++;
+        int played = wins + losses + draws;
+        //Games already running when the test decides still finish and count
+        boolean justDecided = false;
+        if (sprt && !decided){
+            double llr = llr();
+            if (llr >= upperBound() || llr <= lowerBound()){
+                decided = true;
+                justDecided = true;
+            }
+        }
+        if (played % 10 == 0 || justDecided)
+            report(false);
+    }
+
+    private synchronized void report(boolean last){
+        int n = wins + losses + draws;
+        if (n == 0)
+            return;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double[] elo = elo();
+        StringBuilder line = new StringBuilder();
+        line.append(String.format("%s %d games: +%d -%d =%d  elo %+.1f +/- %.1f  %.2f games/s  %.0f moves/s",
+                last ? "Final" : "After", n, wins, losses, draws, elo[0], elo[1], n / seconds, moves / seconds));
+        if (sprt){
+            double llr = llr();
+            line.append(String.format("  LLR %.2f [%.2f, %.2f]", llr, lowerBound(), upperBound()));
+            if (llr >= upperBound())
+                line.append(" H1 accepted");
+            else if (llr <= lowerBound())
+                line.append(" H0 accepted");
+        }
+        System.out.println(line);
+    }
+
+    //Elo difference and the half-width of its 95% confidence interval
+    private double[] elo(){
+        int n = wins + losses + draws;
+        double score = (wins + 0.5*draws) / n;
+        double deviation = Math.sqrt(variance(score) / n);
+        double elo = eloFromScore(score);
+        double high = eloFromScore(score + 1.96*deviation);
+        double low = eloFromScore(score - 1.96*deviation);
+        return new double[] {elo, (high - low) / 2};
+    }
+
+    //Variance of a single game's score (1, 1/2 or 0) around the mean score
+    private double variance(double score){
+        int n = wins + losses + draws;
+        return (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2) + losses * Math.pow(score, 2)) / n;
+    }
+
+    private static double eloFromScore(double score){
+        score = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400 * Math.log10(1/score - 1);
+    }
+
+    private static double scoreFromElo(double elo){
+        return 1 / (1 + Math.pow(10, -elo/400));
+    }
+
+    //Log likelihood ratio of elo1 against elo0, using the normal approximation to the game scores
+    private double llr(){
+        int n = wins + losses + draws;
+        double score = (wins + 0.5*draws) / n;
+        double var = variance(score);
+        if (var == 0)
+            return 0;
+        double s0 = scoreFromElo(elo0);
+        double s1 = scoreFromElo(elo1);
+        return n * (s1 - s0) * (2*score - s0 - s1) / (2*var);
+    }
+
+    private static double lowerBound(){
+        return Math.log(SPRT_BETA / (1 - SPRT_ALPHA));
+    }
+
+    private static double upperBound(){
+        return Math.log((1 - SPRT_BETA) / SPRT_ALPHA);
+    }
+}
@@ -0,0 +1,68 @@
+// Fixed-size table of search results, keyed by Zobrist key
+// Entries outlive a single search; a generation counter marks which ones are stale
+// Implementations are safe to share between search threads without locks: the key word is stored
+// XORed with the data word, so an entry torn by two threads writing at once fails the key check
+// and reads as a miss
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+public interface TranspositionTable {
+
+    //Bound types
+    int EXACT = 0;
+    int LOWER = 1;
+    int UPPER = 2;
+
+    int NO_MOVE = 7;
+
+    //Data word layout: score in bits 0-31, depth 32-39, bound 40-41, move 42-44, generation 48-55,
+    //bit 63 marks a used slot
+    long USED = 1L << 63;
+
+    //Number of entries the table holds
+    long size();
+
+    void clear();
+
+    //Called at the start of every search so entries from earlier searches become replaceable
+    void newSearch();
+
+    int getGeneration();
+
+    //Returns the data word stored for this key, or 0 if the position is not in the table
+    long probe(long key);
+
+    void store(long key, int depth, int bound, int score, int move);
+
+    //For TableSnapshot: the layout the entries are saved in, and writing them out in that layout
+    int getLayout();
+
+    void writeEntries(WritableByteChannel out) throws IOException;
+
+    //Depths beyond the 8 bit field are stored as 255, which is deeper than any game lasts anyway
+    static long pack(int generation, int depth, int bound, int score, int move){
+        return USED | ((long) generation << 48) | ((long) move << 42) | ((long) bound << 40)
+                | ((long) Math.min(depth, 0xFF) << 32) | (score & 0xFFFFFFFFL);
+    }
+
+    static int score(long entry){
+        return (int) entry;
+    }
+
+    static int depth(long entry){
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    static int bound(long entry){
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    static int move(long entry){
+        return (int) (entry >>> 42) & 0x7;
+    }
+
+    static int generation(long entry){
+        return (int) (entry >>> 48) & 0xFF;
+    }
+}
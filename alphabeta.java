@@ -1,702 +1,883 @@
 // Brian Oh
 // Connect Four AI using Iterative Deepening Minimax with Alpha-Beta Pruning
 
+import java.io.IOException;
 import java.lang.Math;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.AbstractMap;
-import java.util.Random;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import jdk.jfr.FlightRecorder;
 
 public class alphabeta extends AIModule{
     
+    final private int defaultHashSizeMB = 64;
+    //Half-width of the aspiration window around the previous iteration's score
+    final private int aspirationWindow = 50;
+    //Nodes closer to the leaves than this are not worth splitting between threads
+    final private int minSplitDepth = 4;
     private int player;
-    private long[][] zobHash = new long[42][2];
-    private HashMap<Long, Long> ttZobHash = new HashMap<>();
-    private HashMap<Long, Integer> ttDepth = new HashMap<>();
-    private HashMap<Long, Double> ttUpperBound = new HashMap<>();
-    private HashMap<Long, Double> ttLowerBound = new HashMap<>();
+    private Evaluator evaluator = new Evaluator();
+    private TranspositionTable tt = new HeapTranspositionTable(defaultHashSizeMB);
+    private OpeningBook book = OpeningBook.openIfExists(OpeningBook.DEFAULT_FILE);
+    //Positions with at most this many empty cells are solved exactly instead of searched
+    private int endgameThreshold = 16;
+    //Created on the first position it solves, so engines that never reach the endgame skip its table
+    private int solverHashSizeMB = 16;
+    private EndgameSolver solver;
+    private boolean keepTableAcrossGames = false;
+    private int lastCoins = -1;
+    
+    //How each iteration of the iterative deepening searches the root
+    public enum RootDriver { PVS, MTDF }
+    private RootDriver rootDriver = RootDriver.PVS;
+    
+    //Lazy SMP: helper threads search the same root alongside the main search and share the table
+    private int threads = 1;
+    private ExecutorService helperPool;
+    private final Searcher mainSearcher = new Searcher();
+    private final List<Searcher> helpers = new ArrayList<>();
+    
+    //Young brothers wait: once the first child of a node is searched, its siblings are split
+    //across this pool
+    private ForkJoinPool splitPool;
+    //Searchers for split tasks, kept per pool thread and reused from task to task. A thread that
+    //waits on its own split runs other tasks meanwhile, so it needs one for every level it nests
+    private final ThreadLocal<ArrayDeque<Searcher>> splitSearchers = ThreadLocal.withInitial(ArrayDeque::new);
+    
+    //Search statistics, summed over every thread of the current search
+    private final SearchStats.Totals totals = new SearchStats.Totals();
+    private final List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+    
+    //Without a move time or clock the search runs until terminate is set
+    private final TimeManager timeManager = new TimeManager();
+    //How many nodes a thread searches between looks at the clock
+    final private int timeCheckInterval = 1024;
+    
+    //Pondering: after each move, keep searching the position after the reply we expect while the
+    //opponent thinks. While pondering the search ignores terminate, which belongs to the move we
+    //already returned
+    private boolean ponder = false;
+    private ExecutorService ponderPool;
+    private Future<?> ponderTask;
+    private long ponderKey;
+    private volatile boolean pondering;
+    
+    //Replace the transposition table with an empty one of the given size in megabytes
+    public void setHashSize(int megabytes){
+        stopPondering();
+        tt = new HeapTranspositionTable(megabytes);
+    }
+    
+    //Search with the given table instead, for example an OffHeapTranspositionTable of several gigabytes
+    public void setTable(TranspositionTable table){
+        stopPondering();
+        tt = table;
+    }
+    
+    //Save the table so another process can start with it, see TableSnapshot
+    public void saveTable(Path file) throws IOException {
+        stopPondering();
+        TableSnapshot.save(tt, player, file);
+    }
+    
+    //Search with a table saved by saveTable. The snapshot remembers which side its scores are from,
+    //so playing that side again keeps the table on the first move instead of clearing it. Scores
+    //are only valid with the evaluator the table was saved with
+    public void loadTable(Path file) throws IOException {
+        stopPondering();
+        TableSnapshot snapshot = TableSnapshot.load(file);
+        tt = snapshot.getTable();
+        player = snapshot.getPlayer();
+    }
+    
+    //Forget everything the table has learned, for example between unrelated positions
+    public void clearTable(){
+        stopPondering();
+        tt.clear();
+    }
+    
+    //By default the table is kept between moves of a game and cleared when a new game starts
+    public void setKeepTableAcrossGames(boolean keep){
+        keepTableAcrossGames = keep;
+    }
+    
+    //Replace the evaluation weights; clears the table since stored scores no longer apply
+    public void setEvaluator(Evaluator e){
+        stopPondering();
+        evaluator = e;
+        tt.clear();
+    }
+    
+    //Book consulted before searching; null to always search
+    public void setOpeningBook(OpeningBook b){
+        book = b;
+    }
+    
+    //PVS with aspiration windows by default, or MTD(f)
+    public void setRootDriver(RootDriver driver){
+        rootDriver = driver;
+    }
+    
+    //0 turns the exact endgame solver off
+    public void setEndgameThreshold(int emptyCells){
+        endgameThreshold = emptyCells;
+    }
+    
+    //Size of the endgame solver's own table in megabytes, on top of the main table
+    public void setSolverHashSize(int megabytes){
+        solverHashSizeMB = megabytes;
+        solver = null;
+    }
+    
+    //Total number of search threads, including the one getNextMove runs on
+    public void setThreads(int n){
+        threads = Math.max(1, n);
+    }
+    
+    //Number of threads that share the main search tree; 1 turns node splitting off
+    public void setSplitThreads(int n){
+        stopPondering();
+        if (splitPool != null)
+            splitPool.shutdown();
+        splitPool = n > 1 ? new ForkJoinPool(n) : null;
+    }
+    
+    //Think for at most this many milliseconds per move; 0 to search until terminate is set
+    public void setMoveTime(long millis){
+        timeManager.setMoveTime(millis);
+    }
+    
+    //Time left on our clock and the increment per move, to be set before each move. The move gets
+    //a share of the remaining time, capped by the move time if one is set
+    public void setClock(long remainingMillis, long incrementMillis){
+        timeManager.setClock(remainingMillis, incrementMillis);
+    }
+    
+    //Search on the opponent's time; off by default
+    public void setPonder(boolean on){
+        ponder = on;
+        if (!on)
+            stopPondering();
+    }
+    
+    //Nodes searched by all threads in the last search
+    public long getNodeCount(){
+        return totals.get(SearchStats.NODES);
+    }
+    
+    //Told about every completed iteration of the main search, as is any running flight recording
+    public void addSearchListener(SearchListener l){
+        listeners.add(l);
+    }
+    
+    public void removeSearchListener(SearchListener l){
+        listeners.remove(l);
+    }
     
     @Override
     public void getNextMove(final GameStateModule state){
-        int depth = 0;
+        //The clock starts before anything else, since clearing a large table takes time too
+        timeManager.startMove(state.getCoins());
+        //Search a bitboard copy of the position that is modified in place
+        Bitboard board = new Bitboard(state);
+        
+        //If the opponent played the reply we pondered on, that search becomes this move's search
+        //and runs on under this move's time limit
+        if (ponderTask != null && board.getKey() == ponderKey && state.getCoins() > lastCoins){
+            pondering = false;
+            await(ponderTask);
+            ponderTask = null;
+            lastCoins = state.getCoins();
+            chosenMove = mainSearcher.bestMove >= 0 ? mainSearcher.bestMove : centralMove(board);
+            startPondering(board, chosenMove);
+            return;
+        }
+        stopPondering();
+        
+        int lastPlayer = player;
         if(state.getCoins()%2 == 0)
             player = 1;
         else
             player = 2;
-        int bestMove = -1;
-        double bestScore;
-        Random rng = new Random();
-        for (long[] zobHash1 : zobHash) {
-            for (int j = 0; j < zobHash1.length; j++) {
-                zobHash1[j] = rng.nextLong();
+        
+        //Fewer coins than last time means a new game. Stored scores are from our player's point of
+        //view, so they can only be reused if we still play the same side
+        boolean newGame = state.getCoins() < lastCoins;
+        if((newGame && !keepTableAcrossGames) || player != lastPlayer)
+            tt.clear();
+        tt.newSearch();
+        totals.reset();
+        lastCoins = state.getCoins();
+        
+        if (book != null){
+            int bookMove = book.lookup(board);
+            if (bookMove >= 0 && board.canMakeMove(bookMove)){
+                chosenMove = bookMove;
+                return;
             }
         }
-        
-        while (!terminate){
-            bestScore = Double.MIN_VALUE;
-            for(int i=0; i<state.getWidth(); i++){
-                if(state.canMakeMove(i)){
-                    state.makeMove(i);
-                    double moveScore = minimaxAB(state, depth, false, Double.MIN_VALUE, Double.MAX_VALUE);
-                    if(moveScore > bestScore)
-                    {
-                        bestMove = i;
-                        bestScore = moveScore;
-                    }
-                    state.unMakeMove();
-                }
+        if (board.getWidth()*board.getHeight() - board.getCoins() <= endgameThreshold){
+            if (solver == null)
+                solver = new EndgameSolver(solverHashSizeMB);
+            solver.setStopCondition(() -> terminate || timeManager.outOfTime());
+            int solvedMove = solver.solve(board);
+            if (solvedMove >= 0){
+                chosenMove = solvedMove;
+                return;
             }
-            depth++;
-        }     
-        chosenMove = bestMove; 
-    }
-    
-    private double minimaxAB(GameStateModule node, int depth, boolean isMaxPlayer, double alpha, double beta){
-        double currValue;
-        
-        //If the game state is already in our transposition table, return the values
-        long hashKey = zobristHash(node);
-        if (ttZobHash.containsKey(hashKey) && hashKey == ttZobHash.get(hashKey)){
-            if (ttDepth.get(hashKey)==depth){
-                if (ttLowerBound.get(hashKey)>= beta) 
-                    return ttLowerBound.get(hashKey);
-                if (ttUpperBound.get(hashKey) <= alpha)
-                    return ttUpperBound.get(hashKey);
+            //Out of time before a single column was solved; play the stored or most central move
+            long rootEntry = tt.probe(board.getCanonicalKey());
+            int fallback = rootEntry != 0 ? board.canonicalMove(TranspositionTable.move(rootEntry)) : TranspositionTable.NO_MOVE;
+            chosenMove = fallback < board.getWidth() && board.canMakeMove(fallback) ? fallback : centralMove(board);
+            return;
+        }
+        mainSearcher.reset(board);
+        search(board);
+        //Out of time before the first iteration finished
+        chosenMove = mainSearcher.bestMove >= 0 ? mainSearcher.bestMove : centralMove(board);
+        startPondering(board, chosenMove);
+    }
+    
+    //Main search with helpers, once mainSearcher has been reset to the board
+    private void search(Bitboard board){
+        List<Future<?>> running = startHelpers(board);
+        runMainSearch(Integer.MAX_VALUE);
+        stopHelpers(running);
+    }
+    
+    //Starts searching the position after our move and the reply the table expects, unless there
+    //is no expected reply or the book or endgame solver would handle that position anyway
+    private void startPondering(Bitboard board, int move){
+        if (!ponder)
+            return;
+        Bitboard next = new Bitboard();
+        next.copyFrom(board);
+        next.makeMove(move);
+        if (next.isGameOver())
+            return;
+        long entry = tt.probe(next.getCanonicalKey());
+        if (entry == 0 || TranspositionTable.move(entry) == TranspositionTable.NO_MOVE)
+            return;
+        int reply = next.canonicalMove(TranspositionTable.move(entry));
+        if (!next.canMakeMove(reply))
+            return;
+        next.makeMove(reply);
+        if (next.isGameOver() || next.getWidth()*next.getHeight() - next.getCoins() <= endgameThreshold
+                || (book != null && book.lookup(next) >= 0))
+            return;
+        
+        if (ponderPool == null){
+            ponderPool = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "alphabeta-ponder");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        ponderKey = next.getKey();
+        pondering = true;
+        timeManager.startUnlimited();
+        tt.newSearch();
+        totals.reset();
+        //Reset here rather than on the ponder thread, so a cancel can never be undone by a late reset
+        mainSearcher.reset(next);
+        ponderTask = ponderPool.submit(() -> search(next));
+    }
+    
+    //Cancels a running ponder search and waits the short time it takes to unwind
+    private void stopPondering(){
+        if (ponderTask == null)
+            return;
+        mainSearcher.stop = true;
+        await(ponderTask);
+        ponderTask = null;
+        pondering = false;
+    }
+    
+    private int centralMove(Bitboard board){
+        int[] centerOrder = {3, 2, 4, 1, 5, 0, 6};
+        for(int i : centerOrder){
+            if (board.canMakeMove(i))
+                return i;
+        }
+        return -1;
+    }
+    
+    //Fixed-depth search outside the game loop, for tools and measurements. Returns the best column
+    public int searchToDepth(Bitboard board, int depth){
+        stopPondering();
+        //Stored scores are from the searching player's point of view
+        if (board.getActivePlayer() != player)
+            tt.clear();
+        player = board.getActivePlayer();
+        tt.newSearch();
+        totals.reset();
+        timeManager.startUnlimited();
+        mainSearcher.reset(board);
+        runMainSearch(depth);
+        return mainSearcher.bestMove;
+    }
+    
+    private void runMainSearch(int maxDepth){
+        //Split tasks can only be forked from inside the pool, so the whole search runs there
+        ForkJoinPool pool = splitPool;
+        if (pool != null)
+            pool.invoke(ForkJoinTask.adapt(() -> mainSearcher.think(0, maxDepth)));
+        else
+            mainSearcher.think(0, maxDepth);
+    }
+    
+    private List<Future<?>> startHelpers(Bitboard board){
+        List<Future<?>> running = new ArrayList<>();
+        if (threads <= 1)
+            return running;
+        if (helperPool == null || helpers.size() != threads-1){
+            if (helperPool != null)
+                helperPool.shutdownNow();
+            helperPool = Executors.newFixedThreadPool(threads-1, r -> {
+                Thread t = new Thread(r, "alphabeta-helper");
+                t.setDaemon(true);
+                return t;
+            });
+            helpers.clear();
+            for(int i=0; i<threads-1; i++){
+                helpers.add(new Searcher());
             }
         }
+        for(int i=0; i<helpers.size(); i++){
+            Searcher helper = helpers.get(i);
+            helper.reset(board);
+            //Odd helpers start one ply deeper so the threads spread over two depths
+            int startDepth = (i+1) % 2;
+            running.add(helperPool.submit(() -> helper.think(startDepth, Integer.MAX_VALUE)));
+        }
+        return running;
+    }
+    
+    private void stopHelpers(List<Future<?>> running){
+        for(Searcher helper : helpers){
+            helper.stop = true;
+        }
+        for(Future<?> f : running){
+            await(f);
+        }
+    }
+    
+    private static void await(Future<?> f){
+        try {
+            f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+    
+    //Bounds and result of a node whose younger siblings are being searched by several threads
+    private static class SplitPoint {
+        final SplitPoint parent;
+        final boolean isMaxPlayer;
+        int alpha;
+        int beta;
+        int value;
+        int bestMove;
+        volatile boolean cutoff;
         
-        //If running low on time, stop growing the game tree
-        //Leaf node, evaluate it and return its value
-        if (depth==0 || node.isGameOver() || terminate){
-            return evalFct(node, isMaxPlayer);
+        SplitPoint(SplitPoint parent, boolean isMaxPlayer, int alpha, int beta, int value, int bestMove){
+            this.parent = parent;
+            this.isMaxPlayer = isMaxPlayer;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.value = value;
+            this.bestMove = bestMove;
         }
         
-        //Maximizing player
-        else if (isMaxPlayer){
-            currValue = Double.MIN_VALUE;
-            ArrayList<Map.Entry<GameStateModule,Integer>> children = getChildren(node);
-            for(int i=0; i<children.size(); i++){
-                currValue = Math.max(currValue, minimaxAB(children.get(i).getKey(), depth-1, false, alpha, beta));
-                alpha = Math.max(alpha, currValue);
-                if (beta<=alpha){
-                    break;
-                }
-            }         
+        synchronized int getAlpha(){
+            return alpha;
         }
         
-        //Minimizing player
-        else{ 
-            currValue = Double.MAX_VALUE;
-            ArrayList<Map.Entry<GameStateModule,Integer>> children = getChildren(node);
-            for(int i=0; i<children.size(); i++){
-                currValue = Math.min(currValue, minimaxAB(children.get(i).getKey(), depth-1, true, alpha, beta));
-                beta = Math.min(beta, currValue);
-                if(beta<=alpha)
-                    break;
-            }
+        synchronized int getBeta(){
+            return beta;
         }
         
-        //Record transposition table information
-        if (currValue <= alpha)
-            ttUpperBound.put(hashKey, currValue);
-        if (currValue > alpha && currValue < beta) {
-            ttLowerBound.put(hashKey, currValue);
-            ttUpperBound.put(hashKey, currValue);
+        synchronized void update(int score, int move){
+            if (cutoff)
+                return;
+            if (isMaxPlayer){
+                if (score > value){
+                    value = score;
+                    bestMove = move;
+                }
+                alpha = Math.max(alpha, value);
+            }
+            else{
+                if (score < value){
+                    value = score;
+                    bestMove = move;
+                }
+                beta = Math.min(beta, value);
+            }
+            if (beta <= alpha)
+                cutoff = true;
         }
-        if (currValue >= beta)
-            ttLowerBound.get(hashKey);
         
-        return currValue;
+        //A cutoff anywhere above makes the work under this split point useless
+        boolean isCancelled(){
+            for(SplitPoint p = this; p != null; p = p.parent){
+                if (p.cutoff)
+                    return true;
+            }
+            return false;
+        }
     }
     
-    private ArrayList<Map.Entry<GameStateModule,Integer>> getChildren(GameStateModule node){
-        ArrayList<Map.Entry<GameStateModule,Integer>> children = new ArrayList<>();
+    //Searches one younger sibling of a split point on a pooled searcher's board. The node is not
+    //changed until every sibling has finished, so each task copies it when it starts
+    //Never serialized, though RecursiveAction is Serializable
+    @SuppressWarnings("serial")
+    private class SplitTask extends RecursiveAction {
+        private final Searcher root;
+        private final SplitPoint sp;
+        private final Bitboard node;
+        private final int move;
+        private final int depth;
+        private final int ply;
         
-        //Iterate through every column and if possible, create a new GameStateModule node 
-        for(int i=0; i<node.getWidth(); i++){
-            if(node.canMakeMove(i)){
-                Map.Entry<GameStateModule,Integer> child = new AbstractMap.SimpleEntry<>(node.copy(), i);
-                child.getKey().makeMove(i);
-                children.add(child);
+        SplitTask(Searcher root, SplitPoint sp, Bitboard node, int move, int depth, int ply){
+            this.root = root;
+            this.sp = sp;
+            this.node = node;
+            this.move = move;
+            this.depth = depth;
+            this.ply = ply;
+        }
+        
+        @Override
+        protected void compute(){
+            ArrayDeque<Searcher> free = splitSearchers.get();
+            Searcher searcher = free.isEmpty() ? new Searcher() : free.pop();
+            try {
+                searcher.attach(root, sp, node, move);
+                search(searcher);
+            } finally {
+                free.push(searcher);
             }
         }
         
-        return children;
+        private void search(Searcher searcher){
+            if (searcher.stopped())
+                return;
+            int alpha = sp.getAlpha();
+            int beta = sp.getBeta();
+            int score;
+            //The eldest brother already set the bounds, so start with a null window test
+            if (sp.isMaxPlayer){
+                score = searcher.minimaxAB(searcher.board, depth, ply, false, alpha, alpha+1);
+                if (score > alpha && score < beta)
+                    score = searcher.minimaxAB(searcher.board, depth, ply, false, alpha, beta);
+            }
+            else{
+                score = searcher.minimaxAB(searcher.board, depth, ply, true, beta-1, beta);
+                if (score < beta && score > alpha)
+                    score = searcher.minimaxAB(searcher.board, depth, ply, true, alpha, beta);
+            }
+            if (!searcher.stopped())
+                sp.update(score, move);
+            totals.add(searcher.counts);
+        }
     }
     
-    private long zobristHash(GameStateModule board){
-        long boardHash=0;
+    //Per-thread search state: its own board and move ordering, with the transposition table shared
+    private class Searcher {
+        private final Bitboard board = new Bitboard();
+        private final MoveOrdering ordering = new MoveOrdering();
+        //The searcher that owns the whole tree, and the split point this one works under if any
+        private Searcher root;
+        private SplitPoint split;
+        private volatile boolean stop;
+        private int rootBestMove;
+        int bestMove;
+        //This thread's statistics, added to the totals after every iteration
+        final long[] counts = new long[SearchStats.COUNTERS];
+        //Totals of the search so far, to work out the main search's iterations from
+        private final long[] searchCounts = new long[SearchStats.COUNTERS];
+        private final long[] iterationCounts = new long[SearchStats.COUNTERS];
+        private long lastIterationNodes;
+        
+        Searcher(){
+            root = this;
+            split = null;
+        }
+        
+        //Sets a pooled searcher up to search the given move of a split node. Its move ordering
+        //carries over from earlier tasks, as a helper's does from one iteration to the next
+        void attach(Searcher root, SplitPoint split, Bitboard node, int move){
+            this.root = root;
+            this.split = split;
+            board.copyFrom(node);
+            board.makeMove(move);
+            Arrays.fill(counts, 0);
+        }
         
-        for(int x=0; x<board.getWidth(); x++){
-            for (int y=0; y<board.getHeight(); y++){
-                int coin = board.getAt(x, y);
-                if(coin!=0){
-                    int oneDIndex = x + y*board.getHeight();
-                    boardHash ^= zobHash[oneDIndex][coin-1];
+        void reset(Bitboard rootBoard){
+            board.copyFrom(rootBoard);
+            ordering.newSearch();
+            stop = false;
+            bestMove = -1;
+            Arrays.fill(counts, 0);
+            Arrays.fill(searchCounts, 0);
+            lastIterationNodes = 0;
+        }
+        
+        private boolean stopped(){
+            return (terminate && !pondering) || root.stop || (split != null && split.isCancelled());
+        }
+        
+        //Called for every node; the main search tree stops itself once the move's time is up
+        private void checkTime(){
+            if ((counts[SearchStats.NODES] & (timeCheckInterval-1)) == 0 && root == mainSearcher
+                    && timeManager.outOfTime())
+                root.stop = true;
+        }
+        
+        //Iterative deepening until told to stop, maxDepth has been searched, or searching deeper
+        //cannot change the result: the score is a proven win or loss, or the search already reaches
+        //the end of every line
+        void think(int startDepth, int maxDepth){
+            int depth = startDepth;
+            int bestScore = 0;
+            int emptyCells = board.getWidth()*board.getHeight() - board.getCoins();
+            if (this == mainSearcher)
+                timeManager.newSearch();
+            long rootEntry = tt.probe(board.getCanonicalKey());
+            if (rootEntry != 0 && TranspositionTable.move(rootEntry) != TranspositionTable.NO_MOVE)
+                bestMove = board.canonicalMove(TranspositionTable.move(rootEntry));
+            while (!stopped() && depth <= maxDepth){
+                //Only the main search watches the clock; helpers are stopped along with it
+                if (this == mainSearcher && !timeManager.canStartIteration())
+                    break;
+                long start = System.nanoTime();
+                if (rootDriver == RootDriver.MTDF)
+                    bestScore = mtdf(depth, bestScore);
+                else
+                    bestScore = aspirationSearch(depth, startDepth, bestScore);
+                totals.add(counts);
+                if (this == mainSearcher && !stopped()){
+                    long nanos = System.nanoTime() - start;
+                    reportIteration(depth, bestScore, nanos);
+                    timeManager.iterationFinished(nanos, lastIterationNodes);
                 }
+                if (Math.abs(bestScore) >= Evaluator.WIN_THRESHOLD || depth >= emptyCells)
+                    break;
+                depth++;
             }
+            totals.add(counts);
         }
         
-        return boardHash;
-    }
-    
-    private double evalFct(GameStateModule node, boolean isMaxPlayer)
-    {
-        if(node.isGameOver()){
-            if (node.getWinner()==player) { //TODO: 1 is hard-coded
-                return 900000.0;
+        private void reportIteration(int depth, int score, long nanos){
+            //The iteration's counts are whatever the totals gained since the last report
+            totals.sumInto(iterationCounts);
+            for(int i=0; i<SearchStats.COUNTERS; i++){
+                iterationCounts[i] -= searchCounts[i];
+                searchCounts[i] += iterationCounts[i];
             }
-            else {
-                return -900000.0;
+            long lastNodes = lastIterationNodes;
+            lastIterationNodes = iterationCounts[SearchStats.NODES];
+            //Nothing is allocated unless someone is listening
+            boolean recording = FlightRecorder.isInitialized() && SearchIterationEvent.enabled();
+            if (listeners.isEmpty() && !recording)
+                return;
+            SearchStats stats = new SearchStats(depth, score, bestMove, nanos, iterationCounts, lastNodes);
+            for(SearchListener l : listeners){
+                l.iterationFinished(stats);
             }
+            if (recording)
+                SearchIterationEvent.commit(stats);
         }
-        else{
-            //initialize the number of in a rows for p1
-            int p1_twoInRow = 0;
-            int p1_threeInRow = 0;
-
-            //initialize the number of in a rows for p2
-            int p2_twoInRow = 0;
-            int p2_threeInRow = 0;
-
-            //initialize prev to 0 (empty) to start
-            int prev = 0;
-
-            //CHECK FOR IN A ROW BY ROW ONLY
-            for(int i = 0; i < node.getHeight(); i++)
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 0; j < node.getWidth(); j++)
-                {
-                    //if node is empty set tentative in a row for p1 and p2 to 0 and set previous coin value to 0
-                    if(node.getAt(i,j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
-                    }
-                    else 
-                    {
-                        //if the slot is occuped by p1
-                        if(node.getAt(i,j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            else if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        //if the slot is occupied by p2
-                        else if(node.getAt(i,j) == 2) // node.getAt(i,j) == 2
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
-                    }
+        
+        //Aspiration window around the last iteration's score, widened to the full range on failure
+        private int aspirationSearch(int depth, int startDepth, int lastScore){
+            int alpha = -Evaluator.INFINITY;
+            int beta = Evaluator.INFINITY;
+            if (depth > startDepth){
+                alpha = lastScore - aspirationWindow;
+                beta = lastScore + aspirationWindow;
+            }
+            while (true){
+                int score = searchRoot(depth, alpha, beta, bestMove);
+                //A stopped search's scores are incomplete, so its column is not trusted
+                if (stopped())
+                    return lastScore;
+                if (score > alpha)
+                    bestMove = rootBestMove;
+                if (score <= alpha)
+                    alpha = -Evaluator.INFINITY;
+                else if (score >= beta)
+                    beta = Evaluator.INFINITY;
+                else
+                    return score;
+            }
+        }
+        
+        //MTD(f): home in on the root score with null window searches starting from a guess. The
+        //transposition table makes each repeated pass over the tree cheap
+        private int mtdf(int depth, int guess){
+            int g = guess;
+            int lower = -Evaluator.INFINITY;
+            int upper = Evaluator.INFINITY;
+            while (lower < upper){
+                int beta = (g == lower) ? g+1 : g;
+                g = searchRoot(depth, beta-1, beta, bestMove);
+                if (stopped())
+                    return guess;
+                //Only a fail high proves the column is at least as good as the bound
+                if (g >= beta){
+                    lower = g;
+                    bestMove = rootBestMove;
                 }
+                else
+                    upper = g;
             }
-
-            prev = 0;
-            //Check for in a row by columns
-            for(int i = 0; i < node.getWidth(); i++)
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 0; j < node.getHeight() ; j++)
+            return g;
+        }
+        
+        //Principal variation search over the root columns; the best column is left in rootBestMove
+        private int searchRoot(int depth, int alpha, int beta, int firstMove){
+            int bestScore = -Evaluator.INFINITY;
+            rootBestMove = -1;
+            //Try the best move of the previous iteration first
+            int count = ordering.orderMoves(board, 0, firstMove);
+            int[] moves = ordering.getMoves(0);
+            for(int m=0; m<count; m++){
+                int i = moves[m];
+                board.makeMove(i);
+                int moveScore;
+                if (m == 0)
+                    moveScore = minimaxAB(board, depth, 1, false, alpha, beta);
+                else{
+                    //Null window test: only re-search with the full window if this move beats alpha
+                    moveScore = minimaxAB(board, depth, 1, false, alpha, alpha+1);
+                    if (moveScore > alpha && moveScore < beta)
+                        moveScore = minimaxAB(board, depth, 1, false, alpha, beta);
+                }
+                board.unMakeMove();
+                if(moveScore > bestScore)
                 {
-                    //if node is empty set tentative in a row for p1 and p2 to 0 and set previous coin value to 0
-                    if(node.getAt(j,i) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
-                    }
-                    else
-                    {
-                        //if the slot is occuped by p1
-                        if(node.getAt(j,i) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        //if the slot is occupied by p2
-                        else if(node.getAt(j,i) == 2) // node.getAt(i,j) == 2
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
-                    }
+                    rootBestMove = i;
+                    bestScore = moveScore;
                 }
+                alpha = Math.max(alpha, moveScore);
+                if (beta<=alpha || stopped())
+                    break;
             }
-            int start=0;
-            if (node.getAt(3,0)==player){ //TODO: 1 is hardcoded
-                start = 1000;
+            return bestScore;
+        }
+        
+        //Splitting needs enough depth left to pay for the tasks, at least two siblings to share
+        //out, and a caller that is running inside the split pool
+        private boolean canSplit(int depth, int remaining){
+            return splitPool != null && depth >= minSplitDepth && remaining >= 2
+                    && ForkJoinTask.getPool() == splitPool;
+        }
+        
+        //Searches moves[from..count) in parallel and waits for all of them
+        private void searchSiblings(SplitPoint sp, Bitboard node, int[] moves, int from, int count, int depth, int ply){
+            List<SplitTask> tasks = new ArrayList<>(count-from);
+            for(int m=from; m<count; m++){
+                tasks.add(new SplitTask(root, sp, node, moves[m], depth-1, ply+1));
             }
-            else if(node.getAt(4,0) == player)
-            {
-                start = 500;
+            ForkJoinTask.invokeAll(tasks);
+        }
+        
+        private void countCutoff(int m){
+            counts[SearchStats.CUTOFFS]++;
+            if (m == 0)
+                counts[SearchStats.FIRST_MOVE_CUTOFFS]++;
+        }
+        
+        private int minimaxAB(Bitboard node, int depth, int ply, boolean isMaxPlayer, int alpha, int beta){
+            int currValue;
+            int alphaOrig = alpha;
+            int betaOrig = beta;
+            int bestCol = TranspositionTable.NO_MOVE;
+            counts[SearchStats.NODES]++;
+            checkTime();
+        
+            //If the game state or its mirror image is already in our transposition table, return the values.
+            //Columns are stored in the canonical orientation
+            long hashKey = node.getCanonicalKey();
+            long entry = tt.probe(hashKey);
+            counts[SearchStats.TT_PROBES]++;
+            int hashMove = TranspositionTable.NO_MOVE;
+            if (entry != 0){
+                counts[SearchStats.TT_HITS]++;
+                hashMove = node.canonicalMove(TranspositionTable.move(entry));
             }
-            else if(node.getAt(2,0) == player)
-            {
-                start = 500;
+            if (entry != 0 && TranspositionTable.depth(entry) >= depth){
+                int ttScore = scoreFromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER && ttScore >= beta)
+                        || (bound == TranspositionTable.UPPER && ttScore <= alpha)){
+                    counts[SearchStats.TT_CUTOFFS]++;
+                    return ttScore;
+                }
             }
-
-
-            //check for left diagonal first half
-            prev = 0;
-            for(int i = 0; i < 7; i++) // column
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 1; j < 7; j++) // row
-                {
-                    if(i + j >= 7)
+        
+            //If running low on time, stop growing the game tree
+            //Leaf node, evaluate it and return its value
+            if (depth==0 || node.isGameOver() || stopped()){
+                return evalFct(node, ply);
+            }
+        
+            //Immediate threats: win at once if possible, otherwise search only the moves that do not
+            //lose to the opponent's next coin, and if there are none the position is lost
+            int toMove = node.getActivePlayer();
+            long allowed = node.safeMoves();
+            if (allowed == Bitboard.WINNING_MOVE)
+                return toMove == player ? Evaluator.WIN - (ply+1) : -(Evaluator.WIN - (ply+1));
+            if (allowed == 0)
+                return toMove == player ? -(Evaluator.WIN - (ply+2)) : Evaluator.WIN - (ply+2);
+        
+            //Maximizing player
+            if (isMaxPlayer){
+                currValue = -Evaluator.INFINITY;
+                int count = ordering.orderMoves(node, ply, hashMove, allowed);
+                int[] moves = ordering.getMoves(ply);
+                for(int m=0; m<count; m++){
+                    if (m == 1 && canSplit(depth, count-1)){
+                        SplitPoint sp = new SplitPoint(split, true, alpha, beta, currValue, bestCol);
+                        searchSiblings(sp, node, moves, 1, count, depth, ply);
+                        currValue = sp.value;
+                        bestCol = sp.bestMove;
+                        if (sp.cutoff){
+                            counts[SearchStats.CUTOFFS]++;
+                            ordering.recordCutoff(node, ply, bestCol, depth);
+                        }
                         break;
-                    //if(field[row][column+row])
-                    if(node.getAt(j, i+j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
                     }
-                    else
-                    {
-                        if(node.getAt(j, i+j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        else if(node.getAt(j, i+j) == 2)
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
+                    int i = moves[m];
+                    node.makeMove(i);
+                    int score;
+                    if (m == 0)
+                        score = minimaxAB(node, depth-1, ply+1, false, alpha, beta);
+                    else{
+                        //Null window test against alpha, re-searched only when the move looks better
+                        score = minimaxAB(node, depth-1, ply+1, false, alpha, alpha+1);
+                        if (score > alpha && score < beta)
+                            score = minimaxAB(node, depth-1, ply+1, false, alpha, beta);
                     }
-                }
-            }
-
-
-            //check for left diagonal first half
-            prev = 0;
-            for(int i = 0; i < 7; i++) // column
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 1; j < 7; j++) // row
-                {
-                    if(i + j >= 7)
-                        break;
-                    //if(field[row][column+row])
-                    if(node.getAt(i+j, j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
+                    node.unMakeMove();
+                    if (score > currValue){
+                        currValue = score;
+                        bestCol = i;
                     }
-                    else
-                    {
-                        if(node.getAt(i+j, j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        else if(node.getAt(i+j, j) == 2)
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
+                    alpha = Math.max(alpha, currValue);
+                    if (beta<=alpha){
+                        countCutoff(m);
+                        ordering.recordCutoff(node, ply, i, depth);
+                        break;
                     }
-                }
+                }         
             }
-
-            //check for left diagonal first half
-            prev = 0;
-            for(int i = 0; i < 7; i++) // column
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 1; j < 7; j++) // row
-                {
-                    if(i - j < 7)
+        
+            //Minimizing player
+            else{ 
+                currValue = Evaluator.INFINITY;
+                int count = ordering.orderMoves(node, ply, hashMove, allowed);
+                int[] moves = ordering.getMoves(ply);
+                for(int m=0; m<count; m++){
+                    if (m == 1 && canSplit(depth, count-1)){
+                        SplitPoint sp = new SplitPoint(split, false, alpha, beta, currValue, bestCol);
+                        searchSiblings(sp, node, moves, 1, count, depth, ply);
+                        currValue = sp.value;
+                        bestCol = sp.bestMove;
+                        if (sp.cutoff){
+                            counts[SearchStats.CUTOFFS]++;
+                            ordering.recordCutoff(node, ply, bestCol, depth);
+                        }
                         break;
-                    //if(field[row][column+row])
-                    if(node.getAt(j, i-j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
                     }
-                    else
-                    {
-                        if(node.getAt(j, i-j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        else if(node.getAt(j, i-j) == 2)
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
+                    int i = moves[m];
+                    node.makeMove(i);
+                    int score;
+                    if (m == 0)
+                        score = minimaxAB(node, depth-1, ply+1, true, alpha, beta);
+                    else{
+                        //Null window test against beta, re-searched only when the move looks better
+                        score = minimaxAB(node, depth-1, ply+1, true, beta-1, beta);
+                        if (score < beta && score > alpha)
+                            score = minimaxAB(node, depth-1, ply+1, true, alpha, beta);
                     }
-                }
-            }
-
-                        //check for left diagonal first half
-            prev = 0;
-            for(int i = 0; i < 7; i++) // column
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 5; j >=0; j--) // row
-                {
-                    if(j - i >= 7)
-                        break;
-                    //if(field[row][column+row])
-                    if(node.getAt(j-i, j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
+                    node.unMakeMove();
+                    if (score < currValue){
+                        currValue = score;
+                        bestCol = i;
                     }
-                    else
-                    {
-                        if(node.getAt(j-i, j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        else if(node.getAt(j-i, j) == 2)
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
+                    beta = Math.min(beta, currValue);
+                    if(beta<=alpha){
+                        countCutoff(m);
+                        ordering.recordCutoff(node, ply, i, depth);
+                        break;
                     }
                 }
             }
-            if(player == 1)
-                return ((10*p1_threeInRow + p1_twoInRow) - (10*p2_threeInRow + p2_twoInRow)+start);
-            else
-                return ((10*p2_threeInRow + p2_twoInRow) - (10*p1_threeInRow + p1_twoInRow)+start);
+        
+            //Record transposition table information, unless the search was cut short
+            if (!stopped()){
+                int bound;
+                if (currValue <= alphaOrig)
+                    bound = TranspositionTable.UPPER;
+                else if (currValue >= betaOrig)
+                    bound = TranspositionTable.LOWER;
+                else
+                    bound = TranspositionTable.EXACT;
+                tt.store(hashKey, depth, bound, scoreToTable(currValue, ply), node.canonicalMove(bestCol));
+            }
+        
+            return currValue;
+        }
+    }
 
+    //Scores are from our player's point of view. A decided game scores a win or loss by how many
+    //plies from the root it took, so the search prefers quicker wins and slower losses
+    private int evalFct(Bitboard node, int ply)
+    {
+        if(node.isGameOver()){
+            int winner = node.getWinner();
+            if (winner == 0)
+                return 0;
+            return winner == player ? Evaluator.WIN - ply : -(Evaluator.WIN - ply);
         }
-    } //*/
-}
+        else{
+            return evaluator.evaluate(node, player);
+        }
+    }
+    
+    //Win and loss scores count plies from the root, but a table entry can be reached at any ply, so
+    //they are stored counting plies from the entry's own position instead
+    private static int scoreToTable(int score, int ply){
+        if (score >= Evaluator.WIN_THRESHOLD)
+            return score + ply;
+        if (score <= -Evaluator.WIN_THRESHOLD)
+            return score - ply;
+        return score;
+    }
     
+    private static int scoreFromTable(int score, int ply){
+        if (score >= Evaluator.WIN_THRESHOLD)
+            return score - ply;
+        if (score <= -Evaluator.WIN_THRESHOLD)
+            return score + ply;
+        return score;
+    }
+}
@@ -3,35 +3,57 @@
 
 import java.lang.Math;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.AbstractMap;
-import java.util.Random;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
 
 public class minimax extends AIModule{
     
-    final private int maxDepth = 5;
+    private int maxDepth = 5;
     int player = 0;
+    private Evaluator evaluator = new Evaluator();
+    
+    //Parallel mode: root subtrees are searched as fork/join tasks on their own board copies
+    private int parallelism = 1;
+    private boolean splitSecondPly = false;
+    private ForkJoinPool pool;
+    //Striped so root tasks on different threads do not contend on one counter
+    private final LongAdder nodes = new LongAdder();
+    //Score of each root column, kept between searches so searching allocates nothing
+    private final int[] moveScores = new int[Bitboard.WIDTH];
+    
+    public void setEvaluator(Evaluator e){
+        evaluator = e;
+    }
+    
+    public void setMaxDepth(int depth){
+        maxDepth = depth;
+    }
+    
+    //Number of worker threads for the root subtrees; 1 searches them one after another
+    public void setParallelism(int threads){
+        parallelism = Math.max(1, threads);
+        if (pool != null && pool.getParallelism() != parallelism){
+            pool.shutdown();
+            pool = null;
+        }
+    }
+    
+    //Also split every root subtree into one task per reply
+    public void setSplitSecondPly(boolean split){
+        splitSecondPly = split;
+    }
+    
     public void getNextMove(final GameStateModule state){
         if(state.getCoins()%2 == 0)
             player = 1;
         else
             player = 2;
 
-        int bestMove = -1;
-        double bestScore = Double.MIN_VALUE;
-        for(int i=0; i<state.getWidth(); i++){
-            if(state.canMakeMove(i)){
-                state.makeMove(i);
-                double moveScore = minimax(state, maxDepth, false);
-                if(moveScore >= bestScore)
-                {
-                    bestMove = i;
-                    bestScore = moveScore;
-                }
-                state.unMakeMove();
-            }
-        }
+        //Search a bitboard copy of the position that is modified in place
+        Bitboard board = new Bitboard(state);
+        int bestMove = searchRoot(board, maxDepth);
         if(state.canMakeMove(bestMove))
             chosenMove = bestMove;
         else
@@ -47,18 +69,123 @@ public class minimax extends AIModule{
         }
     }
     
-    private double minimax(GameStateModule node, int depth, boolean isMaxPlayer){
-        double currValue;
+    //Fixed-depth search outside the game loop, for tools and measurements. Returns the best column
+    public int searchToDepth(Bitboard board, int depth){
+        player = board.getActivePlayer();
+        return searchRoot(board, depth);
+    }
+    
+    //Nodes visited by the last search
+    public long getNodeCount(){
+        return nodes.sum();
+    }
+    
+    private int searchRoot(Bitboard board, int depth){
+        int bestMove = -1;
+        int bestScore = -Evaluator.INFINITY;
+        nodes.reset();
+        if (parallelism > 1)
+            searchRootParallel(board, depth, moveScores);
+        else{
+            for(int i=0; i<board.getWidth(); i++){
+                if(board.canMakeMove(i)){
+                    board.makeMove(i);
+                    moveScores[i] = minimax(board, depth, 1, false);
+                    board.unMakeMove();
+                }
+            }
+        }
+        //Pick the move in column order either way, so both modes choose the same column
+        for(int i=0; i<board.getWidth(); i++){
+            if(board.canMakeMove(i) && moveScores[i] >= bestScore){
+                bestMove = i;
+                bestScore = moveScores[i];
+            }
+        }
+        return bestMove;
+    }
+    
+    private void searchRootParallel(Bitboard board, int depth, int[] moveScores){
+        if (pool == null)
+            pool = new ForkJoinPool(parallelism);
+        List<SubtreeTask> tasks = new ArrayList<>();
+        for(int i=0; i<board.getWidth(); i++){
+            if(board.canMakeMove(i)){
+                SubtreeTask task = new SubtreeTask(board, i, depth, 1, false, splitSecondPly);
+                tasks.add(task);
+                pool.execute(task);
+            }
+        }
+        for(SubtreeTask task : tasks){
+            task.join();
+            moveScores[task.move] = task.score;
+        }
+    }
+    
+    //Searches the subtree after one move on a private copy of the board
+    //The score is kept in a field rather than returned, so it is never boxed
+    //Never serialized, though RecursiveAction is Serializable
+    @SuppressWarnings("serial")
+    private class SubtreeTask extends RecursiveAction {
+        private final Bitboard node = new Bitboard();
+        private final int move;
+        private final int depth;
+        private final int ply;
+        private final boolean isMaxPlayer;
+        private final boolean split;
+        int score;
+        
+        SubtreeTask(Bitboard parent, int move, int depth, int ply, boolean isMaxPlayer, boolean split){
+            node.copyFrom(parent);
+            node.makeMove(move);
+            this.move = move;
+            this.depth = depth;
+            this.ply = ply;
+            this.isMaxPlayer = isMaxPlayer;
+            this.split = split;
+        }
+        
+        @Override
+        protected void compute(){
+            if (!split || depth==0 || node.isGameOver() || terminate){
+                score = minimax(node, depth, ply, isMaxPlayer);
+                return;
+            }
+            
+            List<SubtreeTask> replies = new ArrayList<>();
+            for(int i=0; i<node.getWidth(); i++){
+                if(node.canMakeMove(i))
+                    replies.add(new SubtreeTask(node, i, depth-1, ply+1, !isMaxPlayer, false));
+            }
+            invokeAll(replies);
+            //Same starting values as minimax so the result matches the sequential search
+            int bestValue = isMaxPlayer ? -Evaluator.INFINITY : Evaluator.INFINITY;
+            for(SubtreeTask reply : replies){
+                if (isMaxPlayer)
+                    bestValue = Math.max(bestValue, reply.score);
+                else
+                    bestValue = Math.min(bestValue, reply.score);
+            }
+            score = bestValue;
+        }
+    }
+    
+    private int minimax(Bitboard node, int depth, int ply, boolean isMaxPlayer){
+        int currValue;
+        nodes.increment();
         
         if (depth==0 || node.isGameOver() || terminate){
-            return evalFct(node, isMaxPlayer);
+            return evalFct(node, ply);
         }
 
         else if (isMaxPlayer){
-            double bestValue = Double.MIN_VALUE;
-            ArrayList<Map.Entry<GameStateModule,Integer>> children = getChildren(node);
-            for(int i=0; i<children.size(); i++){
-                currValue = minimax(children.get(i).getKey(), depth-1, false);
+            int bestValue = -Evaluator.INFINITY;
+            for(int i=0; i<node.getWidth(); i++){
+                if(!node.canMakeMove(i))
+                    continue;
+                node.makeMove(i);
+                currValue = minimax(node, depth-1, ply+1, false);
+                node.unMakeMove();
                 bestValue = Math.max(bestValue, currValue);
             }
             
@@ -66,10 +193,13 @@ public class minimax extends AIModule{
         }
         
         else{ //Minimizing player
-            double bestValue = Double.MAX_VALUE;
-            ArrayList<Map.Entry<GameStateModule,Integer>> children = getChildren(node);
-            for(int i=0; i<children.size(); i++){
-                currValue = minimax(children.get(i).getKey(), depth-1, true);
+            int bestValue = Evaluator.INFINITY;
+            for(int i=0; i<node.getWidth(); i++){
+                if(!node.canMakeMove(i))
+                    continue;
+                node.makeMove(i);
+                currValue = minimax(node, depth-1, ply+1, true);
+                node.unMakeMove();
                 bestValue = Math.min(bestValue, currValue);
             }
             
@@ -79,579 +209,17 @@ public class minimax extends AIModule{
         }
     }
     
-    private ArrayList<Map.Entry<GameStateModule,Integer>> getChildren(GameStateModule node){
-        ArrayList<Map.Entry<GameStateModule,Integer>> children = new ArrayList<>();
-        boolean cond;
-        
-        //Iterate through every column and create a new GameStateModule node if possible
-        for(int i=0; i<node.getWidth(); i++){
-            cond = node.getHeightAt(i)==5;
-            if(node.canMakeMove(i)){
-                Map.Entry<GameStateModule,Integer> child = new AbstractMap.SimpleEntry<>(node.copy(), i);
-                child.getKey().makeMove(i);
-                children.add(child);
-            }
-        }
-        
-        return children;
-    }
-    
-    private double evalFct(GameStateModule node, boolean isMaxPlayer)
+    //Scores are from our player's point of view, with quicker wins and slower losses scoring higher
+    private int evalFct(Bitboard node, int ply)
     {
         if(node.isGameOver()){
-            if (node.getWinner()==player) { //TODO: 1 is hard-coded
-                return 900000.0;
-            }
-            else {
-                return -900000.0;
-            }
+            int winner = node.getWinner();
+            if (winner == 0)
+                return 0;
+            return winner == player ? Evaluator.WIN - ply : -(Evaluator.WIN - ply);
         }
         else{
-            //initialize the number of in a rows for p1
-            int p1_twoInRow = 0;
-            int p1_threeInRow = 0;
-
-            //initialize the number of in a rows for p2
-            int p2_twoInRow = 0;
-            int p2_threeInRow = 0;
-
-            //initialize prev to 0 (empty) to start
-            int prev = 0;
-
-            //CHECK FOR IN A ROW BY ROW ONLY
-            for(int i = 0; i < node.getHeight(); i++)
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 0; j < node.getWidth(); j++)
-                {
-                    //if node is empty set tentative in a row for p1 and p2 to 0 and set previous coin value to 0
-                    if(node.getAt(i,j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
-                    }
-                    else 
-                    {
-                        //if the slot is occuped by p1
-                        if(node.getAt(i,j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            else if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        //if the slot is occupied by p2
-                        else if(node.getAt(i,j) == 2) // node.getAt(i,j) == 2
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
-                    }
-                }
-            }
-
-            prev = 0;
-            //Check for in a row by columns
-            for(int i = 0; i < node.getWidth(); i++)
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 0; j < node.getHeight() ; j++)
-                {
-                    //if node is empty set tentative in a row for p1 and p2 to 0 and set previous coin value to 0
-                    if(node.getAt(j,i) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
-                    }
-                    else
-                    {
-                        //if the slot is occuped by p1
-                        if(node.getAt(j,i) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        //if the slot is occupied by p2
-                        else if(node.getAt(j,i) == 2) // node.getAt(i,j) == 2
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
-                    }
-                }
-            }
-            int start=0;
-            if (node.getAt(3,0)==player){ //TODO: 1 is hardcoded
-                start = 1000;
-            }
-            else if(node.getAt(4,0) == player)
-            {
-                start = 500;
-            }
-            else if(node.getAt(2,0) == player)
-            {
-                start = 500;
-            }
-
-
-            //check for left diagonal first half
-            prev = 0;
-            for(int i = 0; i < 7; i++) // column
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 1; j < 7; j++) // row
-                {
-                    if(i + j >= 7)
-                        break;
-                    //if(field[row][column+row])
-                    if(node.getAt(j, i+j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
-                    }
-                    else
-                    {
-                        if(node.getAt(j, i+j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        else if(node.getAt(j, i+j) == 2)
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
-                    }
-                }
-            }
-
-
-            //check for left diagonal first half
-            prev = 0;
-            for(int i = 0; i < 7; i++) // column
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 1; j < 7; j++) // row
-                {
-                    if(i + j >= 7)
-                        break;
-                    //if(field[row][column+row])
-                    if(node.getAt(i+j, j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
-                    }
-                    else
-                    {
-                        if(node.getAt(i+j, j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        else if(node.getAt(i+j, j) == 2)
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
-                    }
-                }
-            }
-
-            //check for left diagonal first half
-            prev = 0;
-            for(int i = 0; i < 7; i++) // column
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 1; j < 7; j++) // row
-                {
-                    if(i - j < 7)
-                        break;
-                    //if(field[row][column+row])
-                    if(node.getAt(j, i-j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
-                    }
-                    else
-                    {
-                        if(node.getAt(j, i-j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        else if(node.getAt(j, i-j) == 2)
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
-                    }
-                }
-            }
-
-                        //check for left diagonal first half
-            prev = 0;
-            for(int i = 0; i < 7; i++) // column
-            {
-                int tent_p1inARow = 0;
-                int tent_p2inARow = 0;
-                for(int j = 5; j >=0; j--) // row
-                {
-                    if(j - i >= 7)
-                        break;
-                    //if(field[row][column+row])
-                    if(node.getAt(j-i, j) == 0)
-                    {
-                        tent_p1inARow = 0;
-                        tent_p2inARow = 0;
-                        prev = 0;
-                    }
-                    else
-                    {
-                        if(node.getAt(j-i, j) == 1)
-                        {
-                            //if the previous coin was by p1, we increment the tentative #in a row for p1
-                            if(prev == 1)
-                            {
-                                tent_p1inARow = tent_p1inARow + 1;
-                            }
-                            //if the previous coin was empty or by p2
-                            if(prev == 0 || prev == 2)
-                            {
-                                //if the tentative #in a row for p1 is greater than equal to 2, we store it
-                                if(tent_p1inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p1inARow == 2)
-                                    {
-                                        p1_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p1inARow == 3)
-                                    {
-                                        p1_twoInRow--;
-                                        p1_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p1inARow = 1;
-                            }
-
-                            //save that the previous value was by p1
-                            prev = 1;
-                        }
-                        else if(node.getAt(j-i, j) == 2)
-                        {
-                            //if the previous coin was by p2, we increment the tentative #in a row for p2
-                            if(prev == 2)
-                            {
-                                tent_p2inARow = tent_p2inARow + 1;
-                            }
-                            //if the previous coin was empty or by p1
-                            else if(prev == 0 || prev == 1)
-                            {
-                                //if the tentative #in a row for p2 is greater than equal to 2, we store it
-                                if(tent_p2inARow >= 2)
-                                {
-                                    //store for 2 in a row
-                                    if(tent_p2inARow == 2)
-                                    {
-                                        p2_twoInRow++;
-                                    }
-                                    //store for 3 in a row
-                                    else if(tent_p2inARow == 3)
-                                    {
-                                        p2_twoInRow--;
-                                        p2_threeInRow++;
-                                    }
-                                }
-                                //reset tentative #in a row for p1 to 1
-                                tent_p2inARow = 1;
-                            }
-                            //save that the previous value was by p2
-                            prev = 2;
-                        }
-                    }
-                }
-            }
-            if(player == 1)
-                return ((10*p1_threeInRow + p1_twoInRow) - (10*p2_threeInRow + p2_twoInRow)+start);
-            else
-                return ((10*p2_threeInRow + p2_twoInRow) - (10*p1_threeInRow + p1_twoInRow)+start);
-
+            return evaluator.evaluate(node, player);
         }
-    } //*/
+    }
 }
-    